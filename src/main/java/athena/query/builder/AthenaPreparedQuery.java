@@ -0,0 +1,49 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * POJO holding an Athena prepared statement body and the ordered parameters
+ * to be supplied with EXECUTE ... USING.
+ * 
+ * <pre>
+ *     PREPARE statementName FROM statement
+ *     EXECUTE statementName USING parameters
+ * </pre>
+ * 
+ * Every parameter of the stock query binds a varchar column or partition key,
+ * so parameters are rendered as quoted Athena string literals with single
+ * quotes escaped, e.g. 'Tesla''s' or '2020'. They can be passed as is in
+ * EXECUTE ... USING or as Athena ExecutionParameters.
+ */
+@Data
+@AllArgsConstructor
+public class AthenaPreparedQuery {
+
+	private String statementName;
+	private String statement;
+	// Ordered Athena literals, one per '?' in statement
+	private List<String> parameters;
+	// Ready to run EXECUTE statementName USING parameters
+	private String executeStatement;
+
+}
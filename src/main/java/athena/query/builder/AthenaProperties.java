@@ -31,4 +31,40 @@ import org.springframework.stereotype.Component;
 @Data
 public class AthenaProperties {
 	private String table;
+	// IN-list arity bucket used when rendering prepared statements
+	private int inListBucketSize = 8;
+	// Max number of distinct prepared statement shapes kept in memory
+	private int preparedStatementCacheSize = 1024;
+	// Optional local manifest of existing date partitions used to prune date filters
+	private String partitionManifestPath;
+	private long partitionManifestRefreshMs = 300000;
+	// Optional local per-partition size statistics used to estimate scanned bytes
+	private String partitionStatsPath;
+	private long partitionStatsRefreshMs = 300000;
+	// Max estimated bytes a query may scan, 0 for no budget
+	private long scanBudgetBytes = 0;
+	// Query generation worker threads, 0 for one per available processor
+	private int queryExecutorThreads = 0;
+	// Requests waiting for a worker, further requests are rejected with 429
+	private int queryExecutorQueueCapacity = 100;
+	// Requests not started within this time are dropped with 503
+	private long queryDeadlineMs = 2000;
+	private int retryAfterSeconds = 1;
+	// Approximate bytes held by the in-process generated query cache, 0 to disable
+	private long queryCacheLocalBytes = 64L * 1024 * 1024;
+	// Queries larger than this are not kept in the in-process cache
+	private long queryCacheMaxEntryBytes = 1024 * 1024;
+	// Optional memory-mapped file shared by all processes on a host
+	private String queryCacheSharedPath;
+	private int queryCacheSharedSlots = 4096;
+	private int queryCacheSharedSlotBytes = 16384;
+	// Most queries accepted in one binary request, larger batches are rejected with 400
+	private int binaryMaxQueriesPerBatch = 100;
+	// Most brands accepted in one query of a binary request, larger queries are rejected with 400
+	private int binaryMaxBrandsPerQuery = 10000;
+	// Largest binary request body, larger bodies are rejected with 413 before being buffered
+	private int binaryMaxRequestBytes = 4 * 1024 * 1024;
+	// Brand lists larger than this are filtered against an inline VALUES relation, 0 to disable.
+	// The default is not measured against Athena planning time
+	private int brandLookupThreshold = 1000;
 }
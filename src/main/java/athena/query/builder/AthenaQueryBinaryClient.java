@@ -0,0 +1,102 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Small client for the binary query generation endpoint, to be used by
+ * internal services. Connections are not disconnected after a call, so
+ * HttpURLConnection reuses them through its keep-alive cache.
+ * 
+ * <pre>
+ *     AthenaQueryBinaryClient client = new AthenaQueryBinaryClient("http://localhost:8080/athena-query-generator");
+ *     List&lt;BinaryQueryResult&gt; results = client.generate(requests);
+ * </pre>
+ */
+public class AthenaQueryBinaryClient {
+
+	public static final String PATH = "/generate/athena/query/binary";
+	public static final String CONTENT_TYPE = "application/octet-stream";
+
+	private final URL url;
+	private final int timeoutMs;
+
+	public AthenaQueryBinaryClient(String baseUrl) throws IOException {
+		this(baseUrl, 5000);
+	}
+
+	public AthenaQueryBinaryClient(String baseUrl, int timeoutMs) throws IOException {
+		this.url = new URL(baseUrl + PATH);
+		this.timeoutMs = timeoutMs;
+	}
+
+	/**
+	 * Generates a query for every request in a single call.
+	 * 
+	 * @param requests
+	 * @return one result per request, in request order
+	 * @throws IOException if the call fails or the service rejects it, e.g.
+	 *                     with 429 when saturated
+	 */
+	public List<BinaryQueryResult> generate(List<MultiRangeQueryRequest> requests) throws IOException {
+		byte[] body = BinaryQueryCodec.encodeRequests(requests);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setConnectTimeout(timeoutMs);
+		connection.setReadTimeout(timeoutMs);
+		connection.setDoOutput(true);
+		connection.setFixedLengthStreamingMode(body.length);
+		connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+		connection.setRequestProperty("Accept", CONTENT_TYPE);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		}
+		int status = connection.getResponseCode();
+		if (status != HttpURLConnection.HTTP_OK) {
+			String retryAfter = connection.getHeaderField("Retry-After");
+			// Drain the error body so the connection goes back to the keep-alive cache
+			InputStream error = connection.getErrorStream();
+			if (error != null) {
+				try (InputStream in = error) {
+					readAll(in);
+				}
+			}
+			throw new IOException("Binary query generation failed with status " + status
+					+ (retryAfter == null ? "" : ", retry after " + retryAfter + "s"));
+		}
+		try (InputStream in = connection.getInputStream()) {
+			return BinaryQueryCodec.decodeResponses(readAll(in));
+		}
+	}
+
+	private byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int read;
+		while ((read = in.read(chunk)) != -1) {
+			out.write(chunk, 0, read);
+		}
+		return out.toByteArray();
+	}
+}
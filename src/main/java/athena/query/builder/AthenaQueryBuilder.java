@@ -20,7 +20,15 @@ import java.time.LocalDate;
 import java.time.Month;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.eclipse.collections.impl.factory.Lists;
 import org.eclipse.collections.impl.list.mutable.FastList;
@@ -52,14 +60,27 @@ public final class AthenaQueryBuilder {
 	// Default template to be used for Athena Query Generation
 	private final SQLTemplates template = H2Templates.builder().printSchema().quote().newLineToSingleSpace().build();
 
+	private final PartitionManifest partitionManifest;
+
 	/**
 	 * Get default SQLQuery instance based on H2Templates
 	 * 
 	 * @return
 	 */
 	public SQLQuery<?> getAthenaSQLQueryInstance() {
+		return getAthenaSQLQueryInstance(true);
+	}
+
+	/**
+	 * Get SQLQuery instance based on H2Templates. When useLiterals is false
+	 * constants are rendered as '?' placeholders and returned as bindings.
+	 * 
+	 * @param useLiterals
+	 * @return
+	 */
+	public SQLQuery<?> getAthenaSQLQueryInstance(boolean useLiterals) {
 		SQLQuery<?> query = new SQLQuery<>(new Configuration(template));
-		query.setUseLiterals(true);
+		query.setUseLiterals(useLiterals);
 		return query;
 	}
 
@@ -88,12 +109,30 @@ public final class AthenaQueryBuilder {
 	 */
 	public boolean applyDateFiltersToQuery(LocalDate fromDate, LocalDate toDate, SQLQuery<?> query,
 			PathBuilder<Object> year, PathBuilder<Object> month, PathBuilder<Object> day) {
+		if (year == null || month == null || day == null) {
+			log.warn("action=apply_date_filters_to_query, message=Year_or_Month_or_Day_Path_doesnt_exist");
+			return false;
+		}
+		return applyDateFiltersToQuery(getDateFilters(fromDate, toDate), query, year, month, day);
+	}
+
+	/**
+	 * Apply precomputed Datefilters to query instance.
+	 * 
+	 * @param dateFilters
+	 * @param query
+	 * @param year
+	 * @param month
+	 * @param day
+	 * @return hasDateFilters true if dateFilters are applied else false
+	 */
+	public boolean applyDateFiltersToQuery(List<DateFilter> dateFilters, SQLQuery<?> query,
+			PathBuilder<Object> year, PathBuilder<Object> month, PathBuilder<Object> day) {
 		boolean hasDateFilters = false;
 		if (year == null || month == null || day == null) {
 			log.warn("action=apply_date_filters_to_query, message=Year_or_Month_or_Day_Path_doesnt_exist");
 			return false;
 		}
-		List<DateFilter> dateFilters = getDateFilters(fromDate, toDate);
 		if (!isEmpty(dateFilters)) {
 			BooleanBuilder bool = new BooleanBuilder();
 
@@ -120,6 +159,145 @@ public final class AthenaQueryBuilder {
 		return hasDateFilters;
 	}
 	
+	/**
+	 * Computes the DateFilters of several date ranges. Ranges are merged first
+	 * so that no partition is selected twice, and the resulting filters are
+	 * compacted into one predicate per year, month or day list.
+	 * 
+	 * With a partition manifest loaded, ranges without partitions are dropped,
+	 * and calendar filters are only used when no range has any partition.
+	 * 
+	 * <pre>
+	 *     If dateRanges = 2020-01-05..2020-01-10, 2020-01-08..2020-01-12, 2020-01-20..2020-01-21
+	 *     DateFilter objects will be as follows:
+	 *         Year -> 2020, Month -> 01, Days -> 05,06,07,08,09,10,11,12,20,21
+	 * </pre>
+	 * 
+	 * @param dateRanges
+	 * @return DateFilter list
+	 */
+	public List<DateFilter> getDateFilters(List<DateRange> dateRanges) {
+		List<DateRange> mergedRanges = mergeDateRanges(dateRanges);
+		if (mergedRanges.size() == 1) {
+			return getDateFilters(mergedRanges.get(0).getFromDate(), mergedRanges.get(0).getToDate());
+		}
+		List<DateFilter> filters = new ArrayList<DateFilter>();
+		if (partitionManifest.isLoaded()) {
+			mergedRanges.forEach(range -> filters.addAll(getManifestDateFilters(range.getFromDate(), range.getToDate())));
+			if (!isEmpty(filters)) {
+				return compactDateFilters(filters);
+			}
+			// Nothing exists in any range, calendar filters keep the query bounded
+			log.warn("action=get_date_filters, message=no_partitions_in_manifest, date_ranges=" + mergedRanges);
+		}
+		mergedRanges.forEach(range -> filters.addAll(getCalendarDateFilters(range.getFromDate(), range.getToDate())));
+		return compactDateFilters(filters);
+	}
+
+	/**
+	 * @param fromDate
+	 * @param toDate
+	 * @throws InvalidDateRangeException if a date is missing or fromDate is
+	 *                                   after toDate
+	 */
+	public void checkDateRange(LocalDate fromDate, LocalDate toDate) {
+		if (fromDate == null || toDate == null || fromDate.isAfter(toDate)) {
+			throw new InvalidDateRangeException("Invalid date range fromDate=" + fromDate + ", toDate=" + toDate);
+		}
+	}
+
+	/**
+	 * Sorts date ranges and coalesces overlapping or adjacent ones.
+	 * 
+	 * <pre>
+	 *     2020-03-01..2020-03-10, 2020-01-01..2020-01-31, 2020-02-01..2020-02-15, 2020-03-05..2020-03-20
+	 *     will be merged to:
+	 *     2020-01-01..2020-02-15, 2020-03-01..2020-03-20
+	 * </pre>
+	 * 
+	 * @param dateRanges
+	 * @return merged date ranges ordered by fromDate
+	 * @throws InvalidDateRangeException if no range is given or a range is
+	 *                                   incomplete or inverted
+	 */
+	public List<DateRange> mergeDateRanges(List<DateRange> dateRanges) {
+		if (isEmpty(dateRanges)) {
+			throw new InvalidDateRangeException("At least one date range is required");
+		}
+		List<DateRange> sorted = new ArrayList<DateRange>(dateRanges);
+		for (DateRange range : sorted) {
+			if (range == null) {
+				throw new InvalidDateRangeException("Invalid date range null");
+			}
+			checkDateRange(range.getFromDate(), range.getToDate());
+		}
+		sorted.sort(Comparator.comparing(DateRange::getFromDate));
+
+		List<DateRange> merged = new ArrayList<DateRange>();
+		DateRange current = new DateRange(sorted.get(0).getFromDate(), sorted.get(0).getToDate());
+		for (DateRange range : sorted.subList(1, sorted.size())) {
+			if (!range.getFromDate().isAfter(current.getToDate().plusDays(1))) {
+				if (range.getToDate().isAfter(current.getToDate())) {
+					current.setToDate(range.getToDate());
+				}
+			} else {
+				merged.add(current);
+				current = new DateRange(range.getFromDate(), range.getToDate());
+			}
+		}
+		merged.add(current);
+		log.debug("action=merge_date_ranges, ranges=" + dateRanges.size() + ", merged_ranges=" + merged.size());
+		return merged;
+	}
+
+	/**
+	 * Groups DateFilters of disjoint ranges per year. A whole year absorbs all
+	 * other filters of that year, whole months are combined into one filter
+	 * and days are combined per month.
+	 * 
+	 * @param filters
+	 * @return compacted DateFilter list ordered by year
+	 */
+	private List<DateFilter> compactDateFilters(List<DateFilter> filters) {
+		Set<String> years = new TreeSet<String>();
+		Set<String> wholeYears = new HashSet<String>();
+		Map<String, TreeSet<String>> wholeMonths = new HashMap<String, TreeSet<String>>();
+		Map<String, TreeMap<String, TreeSet<String>>> daysOfMonth = new HashMap<String, TreeMap<String, TreeSet<String>>>();
+
+		filters.forEach(filter -> {
+			years.add(filter.getYear());
+			if (filter.hasOnlyYear()) {
+				wholeYears.add(filter.getYear());
+			} else if (filter.hasOnlyYearMonth()) {
+				wholeMonths.computeIfAbsent(filter.getYear(), year -> new TreeSet<String>()).addAll(filter.getMonths());
+			} else if (filter.hasYearMonthDay()) {
+				TreeMap<String, TreeSet<String>> months = daysOfMonth.computeIfAbsent(filter.getYear(),
+						year -> new TreeMap<String, TreeSet<String>>());
+				filter.getMonths().forEach(month -> {
+					months.computeIfAbsent(month, m -> new TreeSet<String>()).addAll(filter.getDays());
+				});
+			}
+		});
+
+		List<DateFilter> compacted = new ArrayList<DateFilter>();
+		for (String year : years) {
+			if (wholeYears.contains(year)) {
+				compacted.add(new DateFilter(year, null, null));
+				continue;
+			}
+			Set<String> months = wholeMonths.getOrDefault(year, new TreeSet<String>());
+			if (!months.isEmpty()) {
+				compacted.add(new DateFilter(year, FastList.newList(months), null));
+			}
+			daysOfMonth.getOrDefault(year, new TreeMap<String, TreeSet<String>>()).forEach((month, days) -> {
+				if (!months.contains(month)) {
+					compacted.add(new DateFilter(year, FastList.newListWith(month), FastList.newList(days)));
+				}
+			});
+		}
+		return compacted;
+	}
+
 	/**
 	 * Computes the DateFilters between two localDates to generate an athena Query
 	 * with optimized date based partitioning keys
@@ -147,6 +325,11 @@ public final class AthenaQueryBuilder {
 	 *         Year -> 2020, Month -> 04, Days -> 01,02,03,04,05,06,07,08,09,10,11,12,13,14,15,16,17,18,19
 	 * </pre>
 	 * 
+	 * When a partition manifest is loaded, missing partitions are dropped
+	 * instead.
+	 * 
+	 * @see #getManifestDateFilters(LocalDate, LocalDate)
+	 * 
 	 * @author fraser.sequeira
 	 * 
 	 * @param startDate
@@ -154,6 +337,18 @@ public final class AthenaQueryBuilder {
 	 * @return DateFilter list
 	 */
 	public List<DateFilter> getDateFilters(LocalDate startDate, LocalDate endDate) {
+		if (partitionManifest.isLoaded()) {
+			List<DateFilter> filters = getManifestDateFilters(startDate, endDate);
+			if (!isEmpty(filters)) {
+				return filters;
+			}
+			// Nothing exists in the range, calendar filters keep the query bounded
+			log.warn("action=get_date_filters, message=no_partitions_in_manifest, start_date=" + startDate + ", end_date=" + endDate);
+		}
+		return getCalendarDateFilters(startDate, endDate);
+	}
+
+	private List<DateFilter> getCalendarDateFilters(LocalDate startDate, LocalDate endDate) {
 		List<DateFilter> filters = new ArrayList<DateFilter>();
 		log.debug("action=get_date_filters, start_date=" + startDate.toString() + ", end_date=" + endDate.toString());
 		int firstDayOfStartMonth = startDate.with(firstDayOfMonth()).getDayOfMonth();
@@ -195,6 +390,83 @@ public final class AthenaQueryBuilder {
 		return filters;
 	}
 
+	/**
+	 * Computes the DateFilters between two localDates keeping only partitions
+	 * listed in the partition manifest. A year or a month that the range covers
+	 * entirely is added as a whole if any of its partitions exist, otherwise
+	 * only its existing days within the range are added. Partitions missing
+	 * from the manifest may still exist, so a coarser predicate is never used
+	 * when it could select days outside the range.
+	 * 
+	 * <pre>
+	 *     If startDate = 2020-02-10 and endDate = 2020-04-19
+	 *     and partitions exist for 2020-02-01..2020-02-05, 2020-02-12, 2020-03-01..2020-03-31
+	 *     DateFilter objects will be as follows:
+	 *         Year -> 2020, Month -> 02, Days -> 12
+	 *         Year -> 2020, Months -> 03
+	 * </pre>
+	 * 
+	 * @param startDate
+	 * @param endDate
+	 * @return DateFilter list, empty if no partition exists in the range
+	 */
+	private List<DateFilter> getManifestDateFilters(LocalDate startDate, LocalDate endDate) {
+		List<DateFilter> filters = new ArrayList<DateFilter>();
+		for (int year = startDate.getYear(); year <= endDate.getYear(); year++) {
+			BitSet existing = partitionManifest.getPartitions(year);
+			if (existing.isEmpty()) {
+				continue;
+			}
+			LocalDate from = year == startDate.getYear() ? startDate : LocalDate.of(year, Month.JANUARY, 1);
+			LocalDate to = year == endDate.getYear() ? endDate : LocalDate.of(year, Month.DECEMBER, 31);
+			if (from.getDayOfYear() == 1 && to.getDayOfYear() == to.lengthOfYear()) {
+				filters.add(new DateFilter(year, null, null));
+				continue;
+			}
+
+			BitSet range = getDayOfYearRange(from, to);
+			List<String> months = new ArrayList<String>();
+			for (int month = from.getMonthValue(); month <= to.getMonthValue(); month++) {
+				LocalDate firstOfMonth = LocalDate.of(year, month, 1);
+				LocalDate lastOfMonth = firstOfMonth.with(lastDayOfMonth());
+				BitSet existingInMonth = getDayOfYearRange(firstOfMonth, lastOfMonth);
+				existingInMonth.and(existing);
+				if (existingInMonth.isEmpty()) {
+					continue;
+				}
+				if (!from.isAfter(firstOfMonth) && !to.isBefore(lastOfMonth)) {
+					addAsString(months, month);
+					continue;
+				}
+				existingInMonth.and(range);
+				if (!existingInMonth.isEmpty()) {
+					List<String> days = FastList.newList();
+					for (int i = existingInMonth.nextSetBit(0); i >= 0; i = existingInMonth.nextSetBit(i + 1)) {
+						addAsString(days, LocalDate.ofYearDay(year, i).getDayOfMonth());
+					}
+					List<String> dayMonth = FastList.newList(1);
+					addAsString(dayMonth, month);
+					filters.add(new DateFilter(year, dayMonth, days));
+				}
+			}
+			if (!months.isEmpty()) {
+				filters.add(new DateFilter(year, months, null));
+			}
+		}
+		return filters;
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return BitSet with day of year set for every day between from and to
+	 */
+	private BitSet getDayOfYearRange(LocalDate from, LocalDate to) {
+		BitSet range = new BitSet(367);
+		range.set(from.getDayOfYear(), to.getDayOfYear() + 1);
+		return range;
+	}
+
 	/**
 	 * If startDate = 2020-04-09 and endDate = 2020-04-19
 	 * 
@@ -404,6 +676,120 @@ public final class AthenaQueryBuilder {
 		return filters;
 	}
 
+	/**
+	 * Streams values into a WITH clause holding an inline single column VALUES
+	 * relation, without building an expression per value.
+	 * 
+	 * <pre>
+	 *     relation = brand_lookup, column = brand, values = Nokia, Tesla's
+	 *     WITH brand_lookup (brand) AS (VALUES ('Nokia'), ('Tesla''s'))
+	 * </pre>
+	 * 
+	 * @param sql
+	 * @param relation
+	 * @param column
+	 * @param values
+	 */
+	public void appendValuesRelation(StringBuilder sql, String relation, String column, Iterable<String> values) {
+		sql.append("WITH ").append(relation).append(" (").append(column).append(") AS (VALUES ");
+		boolean first = true;
+		for (String value : values) {
+			if (!first) {
+				sql.append(", ");
+			}
+			first = false;
+			sql.append('(');
+			appendStringLiteral(sql, value);
+			sql.append(')');
+		}
+		sql.append(')');
+	}
+
+	/**
+	 * Renders a value as an Athena literal, e.g. for EXECUTE ... USING.
+	 * 
+	 * <pre>
+	 *     Tesla's -> 'Tesla''s'
+	 *     2020    -> '2020' when given as a String, 2020 when given as a Number
+	 *     null    -> NULL
+	 * </pre>
+	 * 
+	 * @param value String, Number, Boolean or null
+	 * @return literal
+	 */
+	public String toAthenaLiteral(Object value) {
+		if (value == null) {
+			return "NULL";
+		}
+		if (value instanceof Number || value instanceof Boolean) {
+			return value.toString();
+		}
+		StringBuilder literal = new StringBuilder(value.toString().length() + 2);
+		appendStringLiteral(literal, value.toString());
+		return literal.toString();
+	}
+
+	/**
+	 * Appends a quoted Athena string literal, doubling single quotes.
+	 * 
+	 * @param sql
+	 * @param value
+	 */
+	public void appendStringLiteral(StringBuilder sql, String value) {
+		sql.append('\'');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\'') {
+				sql.append('\'');
+			}
+			sql.append(c);
+		}
+		sql.append('\'');
+	}
+
+	/**
+	 * Pads the months and days of every DateFilter up to the next IN-list arity
+	 * bucket so that prepared statements share a small number of shapes.
+	 * 
+	 * @param dateFilters
+	 * @param bucketSize
+	 * @return padded DateFilter list
+	 */
+	public List<DateFilter> padDateFilters(List<DateFilter> dateFilters, int bucketSize) {
+		List<DateFilter> padded = new ArrayList<DateFilter>(dateFilters.size());
+		dateFilters.forEach(filter -> {
+			padded.add(new DateFilter(filter.getYear(), padToArity(filter.getMonths(), bucketSize),
+					padToArity(filter.getDays(), bucketSize)));
+		});
+		return padded;
+	}
+
+	/**
+	 * Pads a list up to the next multiple of bucketSize by repeating its last
+	 * value. Repeated values do not change the result of an IN predicate.
+	 * 
+	 * <pre>
+	 *     bucketSize = 8, values = 09,10,11 -> 09,10,11,11,11,11,11,11
+	 * </pre>
+	 * 
+	 * @param values
+	 * @param bucketSize
+	 * @return padded list, or values itself when no padding is required
+	 */
+	public List<String> padToArity(List<String> values, int bucketSize) {
+		if (isEmpty(values) || bucketSize <= 1 || values.size() % bucketSize == 0) {
+			return values;
+		}
+		int arity = ((values.size() / bucketSize) + 1) * bucketSize;
+		List<String> padded = FastList.newList(arity);
+		padded.addAll(values);
+		String last = values.get(values.size() - 1);
+		while (padded.size() < arity) {
+			padded.add(last);
+		}
+		return padded;
+	}
+
 	/**
 	 * @param fromYear
 	 * @param endYear
@@ -16,14 +16,26 @@ package athena.query.builder;
  * limitations under the License.
  * 
  * */
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import io.swagger.annotations.Api;
@@ -43,13 +55,95 @@ public class AthenaQueryGenerationController {
 
 	private StockQueryBuilder stockQueryBuilder;
 
+	private QueryGenerationExecutor queryGenerationExecutor;
+
+	private AthenaProperties athenaProperties;
+
     @ApiOperation(value = "Generates a sample Athena compliant query")
 	@PostMapping(path = "/generate/athena/query")
-	public String getAthenaQuery(
+	public CompletableFuture<String> getAthenaQuery(
+			@RequestParam(required = true) @ApiParam(value = "fromDate ISO-8601 compliant", example = "2020-01-01", required = true) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+			@RequestParam(required = true) @ApiParam(value = "toDate ISO-8601 compliant", example = "2020-04-14", required = true) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+			@RequestBody(required = true) @ApiParam(value = "List of brands", required = true) List<String> brands) {
+		return queryGenerationExecutor.submit(() -> stockQueryBuilder.getQueryString(fromDate, toDate, brands));
+	}
+
+	@ApiOperation(value = "Generates a sample Athena prepared statement and its ordered EXECUTE USING parameters")
+	@PostMapping(path = "/generate/athena/prepared-query")
+	public CompletableFuture<AthenaPreparedQuery> getAthenaPreparedQuery(
+			@RequestParam(required = true) @ApiParam(value = "fromDate ISO-8601 compliant", example = "2020-01-01", required = true) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+			@RequestParam(required = true) @ApiParam(value = "toDate ISO-8601 compliant", example = "2020-04-14", required = true) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+			@RequestBody(required = true) @ApiParam(value = "List of brands", required = true) List<String> brands) {
+		return queryGenerationExecutor.submit(() -> stockQueryBuilder.getPreparedQuery(fromDate, toDate, brands));
+	}
+
+	@ApiOperation(value = "Generates a sample Athena compliant query with its estimated scan, rejected with 422 if it exceeds the scan budget")
+	@PostMapping(path = "/generate/athena/query/estimate")
+	public CompletableFuture<AthenaQueryEstimate> getAthenaQueryEstimate(
 			@RequestParam(required = true) @ApiParam(value = "fromDate ISO-8601 compliant", example = "2020-01-01", required = true) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
 			@RequestParam(required = true) @ApiParam(value = "toDate ISO-8601 compliant", example = "2020-04-14", required = true) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+			@RequestParam(required = false) @ApiParam(value = "Max bytes the query may scan, capped by aws.athena.scan-budget-bytes") Long maxScanBytes,
 			@RequestBody(required = true) @ApiParam(value = "List of brands", required = true) List<String> brands) {
-		return stockQueryBuilder.getQueryString(fromDate, toDate, brands);
+		return queryGenerationExecutor.submit(() -> stockQueryBuilder.getEstimatedQuery(fromDate, toDate, brands, maxScanBytes));
+	}
+
+	@ApiOperation(value = "Generates a sample Athena compliant query spanning several date ranges")
+	@PostMapping(path = "/generate/athena/query/ranges")
+	public CompletableFuture<String> getAthenaMultiRangeQuery(
+			@RequestBody(required = true) @ApiParam(value = "Date ranges and list of brands", required = true) MultiRangeQueryRequest request) {
+		return queryGenerationExecutor.submit(() -> stockQueryBuilder.getQueryString(request.getDateRanges(), request.getBrands()));
+	}
+
+	@ApiOperation(value = "Generates Athena compliant queries from a compact binary request, see BinaryQueryCodec")
+	@PostMapping(path = AthenaQueryBinaryClient.PATH, consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+	public CompletableFuture<byte[]> getAthenaQueriesBinary(HttpServletRequest httpRequest) throws IOException {
+		// Bounded read, the body is buffered on the servlet thread before admission
+		byte[] body = BinaryQueryCodec.readRequest(httpRequest.getInputStream(), httpRequest.getContentLengthLong(),
+				athenaProperties.getBinaryMaxRequestBytes());
+		return queryGenerationExecutor.submitWithDeadline(deadline -> {
+			List<MultiRangeQueryRequest> requests = BinaryQueryCodec.decodeRequests(body,
+					athenaProperties.getBinaryMaxQueriesPerBatch(), athenaProperties.getBinaryMaxBrandsPerQuery());
+			List<BinaryQueryResult> results = new ArrayList<BinaryQueryResult>(requests.size());
+			for (MultiRangeQueryRequest request : requests) {
+				// Queries left when the deadline passes are failed instead of holding the worker
+				if (deadline.isExceeded()) {
+					results.add(BinaryQueryResult.error(QueryDeadlineExceededException.MESSAGE));
+					continue;
+				}
+				try {
+					results.add(BinaryQueryResult.success(stockQueryBuilder.getQueryString(request.getDateRanges(), request.getBrands())));
+				} catch (InvalidDateRangeException e) {
+					results.add(BinaryQueryResult.error(e.getMessage()));
+				}
+			}
+			return BinaryQueryCodec.encodeResponses(results);
+		});
+	}
+
+	@ExceptionHandler(InvalidBinaryQueryException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public String handleInvalidBinaryQuery(InvalidBinaryQueryException e) {
+		return e.getMessage();
+	}
+
+	@ExceptionHandler(InvalidDateRangeException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public String handleInvalidDateRange(InvalidDateRangeException e) {
+		return e.getMessage();
+	}
+
+	@ExceptionHandler(RejectedExecutionException.class)
+	public ResponseEntity<String> handleRejectedExecution(RejectedExecutionException e) {
+		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(athenaProperties.getRetryAfterSeconds()))
+				.body("Too many query generation requests, retry later");
+	}
+
+	@ExceptionHandler(QueryDeadlineExceededException.class)
+	public ResponseEntity<String> handleQueryDeadlineExceeded(QueryDeadlineExceededException e) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(athenaProperties.getRetryAfterSeconds()))
+				.body(e.getMessage());
 	}
 
 }
@@ -0,0 +1,237 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact length-prefixed binary encoding of query generation requests and
+ * responses for internal service-to-service calls. All numbers are big-endian.
+ * 
+ * <pre>
+ * Request:
+ *     byte    version
+ *     int     query count
+ *     per query:
+ *         int     date range count
+ *         per date range: int fromDate epoch day, int toDate epoch day
+ *         int     brand count
+ *         per brand: unsigned short length, UTF-8 bytes
+ * 
+ * Response:
+ *     byte    version
+ *     int     query count
+ *     per query:
+ *         byte    0 for a generated query, 1 for an error message
+ *         int     length
+ *         UTF-8 bytes
+ * </pre>
+ */
+public final class BinaryQueryCodec {
+
+	public static final byte VERSION = 1;
+
+	private static final byte SUCCESS = 0;
+	private static final byte ERROR = 1;
+	// Smallest encoded size of a query and of a date range, used to reject bogus counts
+	private static final int MIN_QUERY_BYTES = 8;
+	private static final int DATE_RANGE_BYTES = 8;
+	private static final int MIN_BRAND_BYTES = 2;
+
+	private BinaryQueryCodec() {
+	}
+
+	public static byte[] encodeRequests(List<MultiRangeQueryRequest> requests) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(VERSION);
+			out.writeInt(requests.size());
+			for (MultiRangeQueryRequest request : requests) {
+				out.writeInt(request.getDateRanges().size());
+				for (DateRange range : request.getDateRanges()) {
+					out.writeInt((int) range.getFromDate().toEpochDay());
+					out.writeInt((int) range.getToDate().toEpochDay());
+				}
+				out.writeInt(request.getBrands().size());
+				for (String brand : request.getBrands()) {
+					byte[] encoded = brand.getBytes(StandardCharsets.UTF_8);
+					if (encoded.length > 0xFFFF) {
+						throw new IllegalArgumentException("Brand longer than 65535 bytes");
+					}
+					out.writeShort(encoded.length);
+					out.write(encoded);
+				}
+			}
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads a request body, failing as soon as it is known to exceed maxBytes
+	 * so that an oversized body is never buffered.
+	 * 
+	 * @param in
+	 * @param contentLength declared length, or -1 if unknown
+	 * @param maxBytes
+	 * @return body
+	 * @throws BinaryRequestTooLargeException if the body exceeds maxBytes
+	 * @throws IOException
+	 */
+	public static byte[] readRequest(InputStream in, long contentLength, int maxBytes) throws IOException {
+		if (contentLength > maxBytes) {
+			throw new BinaryRequestTooLargeException(maxBytes);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : 8192);
+		byte[] chunk = new byte[8192];
+		int read;
+		while ((read = in.read(chunk)) != -1) {
+			if (out.size() + read > maxBytes) {
+				throw new BinaryRequestTooLargeException(maxBytes);
+			}
+			out.write(chunk, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @param encoded
+	 * @param maxQueries        most queries accepted in one request
+	 * @param maxBrandsPerQuery most brands accepted in one query
+	 * @return decoded requests
+	 * @throws InvalidBinaryQueryException if the request is malformed or
+	 *                                     exceeds maxQueries or
+	 *                                     maxBrandsPerQuery
+	 */
+	public static List<MultiRangeQueryRequest> decodeRequests(byte[] encoded, int maxQueries, int maxBrandsPerQuery) {
+		ByteBuffer buffer = ByteBuffer.wrap(encoded);
+		try {
+			checkVersion(buffer.get());
+			int queryCount = getCount(buffer, MIN_QUERY_BYTES);
+			if (queryCount > maxQueries) {
+				throw new InvalidBinaryQueryException(
+						"Binary query request has " + queryCount + " queries, at most " + maxQueries + " are allowed");
+			}
+			List<MultiRangeQueryRequest> requests = new ArrayList<MultiRangeQueryRequest>(queryCount);
+			for (int i = 0; i < queryCount; i++) {
+				int rangeCount = getCount(buffer, DATE_RANGE_BYTES);
+				List<DateRange> ranges = new ArrayList<DateRange>(rangeCount);
+				for (int j = 0; j < rangeCount; j++) {
+					ranges.add(new DateRange(LocalDate.ofEpochDay(buffer.getInt()), LocalDate.ofEpochDay(buffer.getInt())));
+				}
+				int brandCount = getCount(buffer, MIN_BRAND_BYTES);
+				if (brandCount > maxBrandsPerQuery) {
+					throw new InvalidBinaryQueryException("Binary query has " + brandCount + " brands, at most "
+							+ maxBrandsPerQuery + " are allowed");
+				}
+				List<String> brands = new ArrayList<String>(brandCount);
+				for (int j = 0; j < brandCount; j++) {
+					brands.add(getString(buffer, buffer.getShort() & 0xFFFF));
+				}
+				MultiRangeQueryRequest request = new MultiRangeQueryRequest();
+				request.setDateRanges(ranges);
+				request.setBrands(brands);
+				requests.add(request);
+			}
+			if (buffer.hasRemaining()) {
+				throw new InvalidBinaryQueryException("Unexpected trailing bytes in binary query request");
+			}
+			return requests;
+		} catch (BufferUnderflowException e) {
+			throw new InvalidBinaryQueryException("Truncated binary query request");
+		}
+	}
+
+	public static byte[] encodeResponses(List<BinaryQueryResult> results) {
+		List<byte[]> values = new ArrayList<byte[]>(results.size());
+		int size = 5;
+		for (BinaryQueryResult result : results) {
+			byte[] value = result.getValue() == null ? new byte[0] : result.getValue().getBytes(StandardCharsets.UTF_8);
+			values.add(value);
+			size += 5 + value.length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.put(VERSION);
+		buffer.putInt(results.size());
+		for (int i = 0; i < results.size(); i++) {
+			buffer.put(results.get(i).isSuccess() ? SUCCESS : ERROR);
+			buffer.putInt(values.get(i).length);
+			buffer.put(values.get(i));
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * @param encoded
+	 * @return decoded results
+	 * @throws InvalidBinaryQueryException if the response is malformed
+	 */
+	public static List<BinaryQueryResult> decodeResponses(byte[] encoded) {
+		ByteBuffer buffer = ByteBuffer.wrap(encoded);
+		try {
+			checkVersion(buffer.get());
+			int resultCount = getCount(buffer, 5);
+			List<BinaryQueryResult> results = new ArrayList<BinaryQueryResult>(resultCount);
+			for (int i = 0; i < resultCount; i++) {
+				boolean success = buffer.get() == SUCCESS;
+				results.add(new BinaryQueryResult(success, getString(buffer, buffer.getInt())));
+			}
+			return results;
+		} catch (BufferUnderflowException e) {
+			throw new InvalidBinaryQueryException("Truncated binary query response");
+		}
+	}
+
+	private static void checkVersion(byte version) {
+		if (version != VERSION) {
+			throw new InvalidBinaryQueryException("Unsupported binary query version " + version);
+		}
+	}
+
+	/**
+	 * Reads a count and rejects it if the remaining bytes cannot hold that many
+	 * elements, so a corrupt count never triggers a large allocation.
+	 */
+	private static int getCount(ByteBuffer buffer, int minElementBytes) {
+		int count = buffer.getInt();
+		if (count < 0 || (long) count * minElementBytes > buffer.remaining()) {
+			throw new InvalidBinaryQueryException("Invalid element count " + count);
+		}
+		return count;
+	}
+
+	private static String getString(ByteBuffer buffer, int length) {
+		if (length < 0 || length > buffer.remaining()) {
+			throw new InvalidBinaryQueryException("Invalid string length " + length);
+		}
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+}
@@ -0,0 +1,43 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Result of one query of a binary query generation request. Holds either the
+ * generated query or the reason it could not be generated.
+ * 
+ * @see BinaryQueryCodec
+ */
+@Data
+@AllArgsConstructor
+public class BinaryQueryResult {
+
+	private boolean success;
+	// Generated query, or error message when success is false
+	private String value;
+
+	public static BinaryQueryResult success(String query) {
+		return new BinaryQueryResult(true, query);
+	}
+
+	public static BinaryQueryResult error(String message) {
+		return new BinaryQueryResult(false, message);
+	}
+}
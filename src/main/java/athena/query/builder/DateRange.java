@@ -0,0 +1,39 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.time.LocalDate;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * POJO holding an inclusive date range of a query.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DateRange {
+
+	@ApiModelProperty(value = "fromDate ISO-8601 compliant", example = "2020-01-01", required = true)
+	private LocalDate fromDate;
+	@ApiModelProperty(value = "toDate ISO-8601 compliant", example = "2020-01-31", required = true)
+	private LocalDate toDate;
+
+}
@@ -0,0 +1,151 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Two tier cache of generated queries keyed by canonical request: an
+ * in-process LRU tier bounded by aws.athena.query-cache-local-bytes in front
+ * of an optional {@link SharedQueryStore}.
+ * 
+ * Keys are the SHA-256 of a version identifying the schema and query template
+ * and of the canonical request, so a key has a fixed size however many brands
+ * a request carries, and entries generated under another configuration are
+ * never returned. Queries larger than aws.athena.query-cache-max-entry-bytes
+ * are not kept in the local tier.
+ */
+@Slf4j
+@Component
+public class GeneratedQueryCache {
+
+	// Rough per entry cost of the map entry, key and String headers
+	private static final int ENTRY_OVERHEAD_BYTES = 160;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final LinkedHashMap<String, String> localQueries = new LinkedHashMap<String, String>(16, 0.75f, true);
+
+	private final SharedQueryStore sharedQueryStore;
+
+	private final long localMaxBytes;
+
+	private final long maxEntryBytes;
+
+	private long localBytes;
+
+	public GeneratedQueryCache(AthenaProperties athenaProperties, ObjectProvider<SharedQueryStore> sharedQueryStore) {
+		this.localMaxBytes = athenaProperties.getQueryCacheLocalBytes();
+		this.maxEntryBytes = athenaProperties.getQueryCacheMaxEntryBytes();
+		this.sharedQueryStore = sharedQueryStore.getIfAvailable();
+		log.info("action=init_generated_query_cache, local_bytes=" + localMaxBytes + ", max_entry_bytes=" + maxEntryBytes
+				+ ", shared_store="
+				+ (this.sharedQueryStore == null ? "none" : this.sharedQueryStore.getClass().getSimpleName()));
+	}
+
+	/**
+	 * Returns the cached query of a request, generating and caching it on a
+	 * miss of both tiers.
+	 * 
+	 * @param version          schema and template version
+	 * @param canonicalRequest
+	 * @param generator
+	 * @return query
+	 */
+	public String get(String version, String canonicalRequest, Supplier<String> generator) {
+		String key = getKey(version, canonicalRequest);
+		String query = getLocal(key);
+		if (query != null) {
+			return query;
+		}
+		if (sharedQueryStore != null) {
+			query = sharedQueryStore.get(key);
+		}
+		if (query == null) {
+			query = generator.get();
+			if (sharedQueryStore != null) {
+				sharedQueryStore.put(key, query);
+			}
+		} else {
+			log.debug("action=get_generated_query, message=shared_store_hit");
+		}
+		putLocal(key, query);
+		return query;
+	}
+
+	/**
+	 * @return approximate bytes held by the local tier
+	 */
+	public synchronized long getLocalBytes() {
+		return localBytes;
+	}
+
+	private synchronized String getLocal(String key) {
+		return localMaxBytes > 0 ? localQueries.get(key) : null;
+	}
+
+	private synchronized void putLocal(String key, String query) {
+		long entryBytes = getEntryBytes(key, query);
+		if (entryBytes > maxEntryBytes || entryBytes > localMaxBytes) {
+			log.debug("action=put_generated_query, message=query_too_large_for_local_cache, entry_bytes=" + entryBytes);
+			return;
+		}
+		String previous = localQueries.put(key, query);
+		localBytes += entryBytes - (previous == null ? 0 : getEntryBytes(key, previous));
+		Iterator<Map.Entry<String, String>> eldest = localQueries.entrySet().iterator();
+		while (localBytes > localMaxBytes && eldest.hasNext()) {
+			Map.Entry<String, String> entry = eldest.next();
+			localBytes -= getEntryBytes(entry.getKey(), entry.getValue());
+			eldest.remove();
+		}
+	}
+
+	private static long getEntryBytes(String key, String query) {
+		return ENTRY_OVERHEAD_BYTES + 2L * (key.length() + query.length());
+	}
+
+	/**
+	 * @return hex SHA-256 of version and canonical request
+	 */
+	static String getKey(String version, String canonicalRequest) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(version.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '|');
+			byte[] hash = digest.digest(canonicalRequest.getBytes(StandardCharsets.UTF_8));
+			char[] hex = new char[hash.length * 2];
+			for (int i = 0; i < hash.length; i++) {
+				hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+				hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link SharedQueryStore} backed by a memory-mapped local file, shared by all
+ * processes on a host that map the same file.
+ * 
+ * <pre>
+ * The file holds a header followed by fixed size slots:
+ *     header: int magic, int slot count, int slot size
+ *     slot  : int key length, int query length, long CRC32 of key and query,
+ *             key UTF-8 bytes, query UTF-8 bytes
+ * </pre>
+ * 
+ * A key maps to a single slot and a put overwrites whatever the slot held.
+ * Readers verify the checksum and the key, so a torn write of another
+ * process or a colliding key is seen as a miss.
+ */
+@Slf4j
+public class MappedFileQueryStore implements SharedQueryStore, Closeable {
+
+	private static final int MAGIC = 0x41514331;
+	private static final int HEADER_BYTES = 12;
+	private static final int SLOT_HEADER_BYTES = 16;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int slots;
+	private final int slotBytes;
+
+	public MappedFileQueryStore(Path path, int slots, int slotBytes) throws IOException {
+		if (slots <= 0 || slotBytes <= SLOT_HEADER_BYTES) {
+			throw new IllegalArgumentException("Invalid shared query store size, slots=" + slots + ", slot_bytes=" + slotBytes);
+		}
+		this.slots = slots;
+		this.slotBytes = slotBytes;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) slots * slotBytes);
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != slots || buffer.getInt(8) != slotBytes) {
+			log.info("action=init_shared_query_store, message=formatting_store, path=" + path);
+			synchronized (this) {
+				for (int slot = 0; slot < slots; slot++) {
+					buffer.putInt(getOffset(slot), 0);
+				}
+				buffer.putInt(4, slots);
+				buffer.putInt(8, slotBytes);
+				buffer.putInt(0, MAGIC);
+			}
+		}
+	}
+
+	@Override
+	public String get(String key) {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		int offset = getOffset(getSlot(key));
+		ByteBuffer slot = buffer.duplicate();
+		int keyLength = slot.getInt(offset);
+		int queryLength = slot.getInt(offset + 4);
+		long checksum = slot.getLong(offset + 8);
+		if (keyLength != keyBytes.length || queryLength < 0
+				|| (long) SLOT_HEADER_BYTES + keyLength + queryLength > slotBytes) {
+			return null;
+		}
+		byte[] entry = new byte[keyLength + queryLength];
+		slot.position(offset + SLOT_HEADER_BYTES);
+		slot.get(entry);
+		if (checksum != getChecksum(entry) || !Arrays.equals(keyBytes, Arrays.copyOf(entry, keyLength))) {
+			return null;
+		}
+		return new String(entry, keyLength, queryLength, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void put(String key, String query) {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		byte[] queryBytes = query.getBytes(StandardCharsets.UTF_8);
+		if (SLOT_HEADER_BYTES + keyBytes.length + queryBytes.length > slotBytes) {
+			log.debug("action=put_shared_query, message=query_larger_than_slot, query_bytes=" + queryBytes.length);
+			return;
+		}
+		byte[] entry = new byte[keyBytes.length + queryBytes.length];
+		System.arraycopy(keyBytes, 0, entry, 0, keyBytes.length);
+		System.arraycopy(queryBytes, 0, entry, keyBytes.length, queryBytes.length);
+		int offset = getOffset(getSlot(key));
+		synchronized (this) {
+			ByteBuffer slot = buffer.duplicate();
+			// Invalidate the slot before rewriting it
+			slot.putInt(offset, 0);
+			slot.position(offset + SLOT_HEADER_BYTES);
+			slot.put(entry);
+			slot.putLong(offset + 8, getChecksum(entry));
+			slot.putInt(offset + 4, queryBytes.length);
+			slot.putInt(offset, keyBytes.length);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+
+	/**
+	 * String hash codes are specified by the JDK, so every process maps a key
+	 * to the same slot.
+	 */
+	private int getSlot(String key) {
+		int hash = key.hashCode();
+		return ((hash ^ (hash >>> 16)) & 0x7fffffff) % slots;
+	}
+
+	private int getOffset(int slot) {
+		return HEADER_BYTES + slot * slotBytes;
+	}
+
+	private long getChecksum(byte[] entry) {
+		CRC32 crc = new CRC32();
+		crc.update(entry, 0, entry.length);
+		return crc.getValue();
+	}
+}
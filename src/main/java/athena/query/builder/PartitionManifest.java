@@ -0,0 +1,204 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import static athena.query.builder.Utils.*;
+
+/**
+ * In-memory index of the date partitions that exist in the Athena table,
+ * loaded from a local manifest file and refreshed on a schedule.
+ * 
+ * <pre>
+ * The manifest holds one partition per line in either format:
+ *     2020-04-09
+ *     year=2020/month=04/day=09
+ * and optionally the first day whose partitions may not be listed yet:
+ *     open-from=2020-04-10
+ * Empty lines and lines starting with # are ignored.
+ * </pre>
+ * 
+ * Existing days are kept as one BitSet per year indexed by day of year.
+ * Partitions dated on or after open-from may not be listed yet, so they are
+ * always reported as existing. Without an open-from line, the UTC day the
+ * manifest file was last modified is used instead.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionManifest {
+
+	private static final String OPEN_FROM_PREFIX = "open-from=";
+
+	private final AthenaProperties athenaProperties;
+
+	private volatile Snapshot snapshot;
+
+	@PostConstruct
+	public void init() {
+		refresh();
+	}
+
+	/**
+	 * Reloads the manifest if it changed since it was last loaded. On failure
+	 * the previously loaded manifest is kept.
+	 */
+	@Scheduled(fixedDelayString = "${aws.athena.partition-manifest-refresh-ms:300000}", initialDelayString = "${aws.athena.partition-manifest-refresh-ms:300000}")
+	public void refresh() {
+		String manifestPath = athenaProperties.getPartitionManifestPath();
+		if (manifestPath == null || manifestPath.isEmpty()) {
+			return;
+		}
+		Path path = Paths.get(manifestPath);
+		try {
+			long lastModified = Files.getLastModifiedTime(path).toMillis();
+			Snapshot current = snapshot;
+			if (current != null && current.lastModified == lastModified) {
+				return;
+			}
+			Map<Integer, BitSet> partitions = new TreeMap<>();
+			LocalDate openFrom = null;
+			int count = 0;
+			try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String trimmed = line.trim();
+					if (trimmed.startsWith(OPEN_FROM_PREFIX)) {
+						openFrom = parseOpenFrom(trimmed);
+						continue;
+					}
+					LocalDate date = parsePartition(trimmed);
+					if (date != null) {
+						partitions.computeIfAbsent(date.getYear(), year -> new BitSet(367)).set(date.getDayOfYear());
+						count++;
+					}
+				}
+			}
+			if (openFrom == null) {
+				openFrom = Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC).toLocalDate();
+			}
+			long version = openFrom.toEpochDay();
+			for (Map.Entry<Integer, BitSet> year : partitions.entrySet()) {
+				version = 31 * (31 * version + year.getKey()) + year.getValue().hashCode();
+			}
+			snapshot = new Snapshot(partitions, openFrom, lastModified, version);
+			log.info("action=refresh_partition_manifest, path=" + manifestPath + ", partitions=" + count + ", open_from=" + openFrom);
+		} catch (IOException e) {
+			log.error("action=refresh_partition_manifest, message=unable_to_load_partition_manifest, path=" + manifestPath, e);
+		}
+	}
+
+	public boolean isLoaded() {
+		return snapshot != null;
+	}
+
+	/**
+	 * Identifies the loaded partitions and open-from day. Hosts loading the
+	 * same manifest content get the same version when the manifest has an
+	 * open-from line. Otherwise open-from comes from the file's modification
+	 * time, and hosts only agree if their copies were modified on the same
+	 * UTC day.
+	 * 
+	 * @return version, "none" if no manifest is loaded
+	 */
+	public String getVersion() {
+		Snapshot current = snapshot;
+		return current == null ? "none" : Long.toHexString(current.version);
+	}
+
+	/**
+	 * Returns the existing partitions of a year with bit N set for day of year
+	 * N. The returned BitSet is a copy and may be modified by the caller.
+	 * 
+	 * @param year
+	 * @return
+	 */
+	public BitSet getPartitions(int year) {
+		Snapshot current = snapshot;
+		BitSet existing = current == null ? null : current.partitions.get(year);
+		BitSet partitions = existing == null ? new BitSet(367) : (BitSet) existing.clone();
+		if (current == null) {
+			return partitions;
+		}
+		int daysInYear = Year.of(year).length();
+		if (current.openFrom.getYear() < year) {
+			partitions.set(1, daysInYear + 1);
+		} else if (current.openFrom.getYear() == year) {
+			partitions.set(current.openFrom.getDayOfYear(), daysInYear + 1);
+		}
+		return partitions;
+	}
+
+	private LocalDate parseOpenFrom(String line) {
+		try {
+			return LocalDate.parse(line.substring(OPEN_FROM_PREFIX.length()).trim());
+		} catch (DateTimeException e) {
+			log.warn("action=parse_open_from, message=invalid_open_from_in_manifest, line=" + line);
+			return null;
+		}
+	}
+
+		private LocalDate parsePartition(String line) {
+		if (line.isEmpty() || line.startsWith("#")) {
+			return null;
+		}
+		try {
+			return parsePartitionDate(line);
+		} catch (DateTimeException e) {
+			log.warn("action=parse_partition, message=invalid_partition_in_manifest, line=" + line);
+			return null;
+		}
+	}
+
+	/**
+	 * Immutable view of a loaded manifest, swapped atomically on refresh.
+	 */
+	private static final class Snapshot {
+		private final Map<Integer, BitSet> partitions;
+		private final LocalDate openFrom;
+		private final long lastModified;
+		private final long version;
+
+		private Snapshot(Map<Integer, BitSet> partitions, LocalDate openFrom, long lastModified, long version) {
+			this.partitions = partitions;
+			this.openFrom = openFrom;
+			this.lastModified = lastModified;
+			this.version = version;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import static athena.query.builder.Utils.*;
+
+/**
+ * In-memory per-partition size statistics loaded from a local stats file and
+ * refreshed on a schedule.
+ * 
+ * <pre>
+ * The stats file holds one partition and its size in bytes per line:
+ *     2020-04-09,1048576
+ *     year=2020/month=04/day=09,1048576
+ * Empty lines and lines starting with # are ignored.
+ * </pre>
+ * 
+ * Sizes are kept as cumulative sums per year indexed by day of year, so the
+ * size of any day range is computed with two lookups.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionStatistics {
+
+	private final AthenaProperties athenaProperties;
+
+	private volatile Snapshot snapshot;
+
+	@PostConstruct
+	public void init() {
+		refresh();
+	}
+
+	/**
+	 * Reloads the stats file if it changed since it was last loaded. On failure
+	 * the previously loaded statistics are kept.
+	 */
+	@Scheduled(fixedDelayString = "${aws.athena.partition-stats-refresh-ms:300000}", initialDelayString = "${aws.athena.partition-stats-refresh-ms:300000}")
+	public void refresh() {
+		String statsPath = athenaProperties.getPartitionStatsPath();
+		if (statsPath == null || statsPath.isEmpty()) {
+			return;
+		}
+		Path path = Paths.get(statsPath);
+		try {
+			long lastModified = Files.getLastModifiedTime(path).toMillis();
+			Snapshot current = snapshot;
+			if (current != null && current.lastModified == lastModified) {
+				return;
+			}
+			Map<Integer, long[]> bytes = new HashMap<>();
+			Map<Integer, int[]> partitions = new HashMap<>();
+			try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (line.isEmpty() || line.startsWith("#")) {
+						continue;
+					}
+					try {
+						String[] columns = line.split("[,\\s]+");
+						LocalDate date = parsePartitionDate(columns[0]);
+						long size = Long.parseLong(columns[1]);
+						bytes.computeIfAbsent(date.getYear(), year -> new long[367])[date.getDayOfYear()] = size;
+						partitions.computeIfAbsent(date.getYear(), year -> new int[367])[date.getDayOfYear()] = 1;
+					} catch (DateTimeException | IndexOutOfBoundsException | NumberFormatException e) {
+						log.warn("action=refresh_partition_statistics, message=invalid_partition_statistics, line=" + line);
+					}
+				}
+			}
+			// Convert to cumulative sums
+			bytes.values().forEach(yearBytes -> {
+				for (int i = 1; i < yearBytes.length; i++) {
+					yearBytes[i] += yearBytes[i - 1];
+				}
+			});
+			partitions.values().forEach(yearPartitions -> {
+				for (int i = 1; i < yearPartitions.length; i++) {
+					yearPartitions[i] += yearPartitions[i - 1];
+				}
+			});
+			snapshot = new Snapshot(bytes, partitions, lastModified);
+			log.info("action=refresh_partition_statistics, path=" + statsPath + ", years=" + bytes.size());
+		} catch (IOException e) {
+			log.error("action=refresh_partition_statistics, message=unable_to_load_partition_statistics, path=" + statsPath, e);
+		}
+	}
+
+	public boolean isLoaded() {
+		return snapshot != null;
+	}
+
+	/**
+	 * @param from
+	 * @param to   inclusive, in the same year as from
+	 * @return total size in bytes of the partitions between from and to
+	 */
+	public long getBytes(LocalDate from, LocalDate to) {
+		Snapshot current = snapshot;
+		long[] cumulative = current == null ? null : current.bytes.get(from.getYear());
+		return cumulative == null ? 0 : cumulative[to.getDayOfYear()] - cumulative[from.getDayOfYear() - 1];
+	}
+
+	/**
+	 * @param from
+	 * @param to   inclusive, in the same year as from
+	 * @return number of partitions with statistics between from and to
+	 */
+	public int getPartitionCount(LocalDate from, LocalDate to) {
+		Snapshot current = snapshot;
+		int[] cumulative = current == null ? null : current.partitions.get(from.getYear());
+		return cumulative == null ? 0 : cumulative[to.getDayOfYear()] - cumulative[from.getDayOfYear() - 1];
+	}
+
+	/**
+	 * Immutable view of loaded statistics, swapped atomically on refresh.
+	 */
+	private static final class Snapshot {
+		private final Map<Integer, long[]> bytes;
+		private final Map<Integer, int[]> partitions;
+		private final long lastModified;
+
+		private Snapshot(Map<Integer, long[]> bytes, Map<Integer, int[]> partitions, long lastModified) {
+			this.bytes = bytes;
+			this.partitions = partitions;
+			this.lastModified = lastModified;
+		}
+	}
+}
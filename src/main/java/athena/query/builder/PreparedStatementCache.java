@@ -0,0 +1,91 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds rendered prepared statements keyed by their shape so that each
+ * distinct statement is rendered only once.
+ */
+@Slf4j
+@Component
+public class PreparedStatementCache {
+
+	private final ConcurrentMap<String, Statement> statements = new ConcurrentHashMap<>();
+
+	private final AthenaProperties athenaProperties;
+
+	public PreparedStatementCache(AthenaProperties athenaProperties) {
+		this.athenaProperties = athenaProperties;
+	}
+
+	/**
+	 * @param shape
+	 * @return cached statement or null if the shape was never rendered
+	 */
+	public Statement get(String shape) {
+		return statements.get(shape);
+	}
+
+	/**
+	 * Caches a rendered statement unless the cache is full. If another thread
+	 * rendered the same shape first its statement is returned.
+	 * 
+	 * @param shape
+	 * @param sql
+	 * @return cached statement
+	 */
+	public Statement put(String shape, String sql) {
+		Statement statement = newStatement(sql);
+		if (statements.size() >= athenaProperties.getPreparedStatementCacheSize()) {
+			log.warn("action=put_prepared_statement, message=prepared_statement_cache_full, size=" + statements.size());
+			return statement;
+		}
+		Statement existing = statements.putIfAbsent(shape, statement);
+		return existing == null ? statement : existing;
+	}
+
+	public int size() {
+		return statements.size();
+	}
+
+	/**
+	 * Creates an uncached statement. Statement names are derived from the
+	 * statement body so they are stable across restarts and replicas.
+	 * 
+	 * @param sql
+	 * @return
+	 */
+	public Statement newStatement(String sql) {
+		return new Statement("stmt_" + UUID.nameUUIDFromBytes(sql.getBytes(StandardCharsets.UTF_8)).toString().replace("-", ""), sql);
+	}
+
+	@Value
+	public static class Statement {
+		private String name;
+		private String sql;
+	}
+}
@@ -0,0 +1,46 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the memory-mapped {@link SharedQueryStore} when
+ * aws.athena.query-cache-shared-path is set.
+ * 
+ * Listed in META-INF/spring.factories rather than component scanned, so it is
+ * processed after the application's own configuration and a SharedQueryStore
+ * bean defined there always wins over the memory-mapped one. Define at most
+ * one SharedQueryStore bean, or mark one @Primary.
+ */
+@Configuration
+public class QueryCacheAutoConfiguration {
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnMissingBean(SharedQueryStore.class)
+	@ConditionalOnProperty("aws.athena.query-cache-shared-path")
+	public MappedFileQueryStore mappedFileQueryStore(AthenaProperties athenaProperties) throws IOException {
+		return new MappedFileQueryStore(Paths.get(athenaProperties.getQueryCacheSharedPath()),
+				athenaProperties.getQueryCacheSharedSlots(), athenaProperties.getQueryCacheSharedSlotBytes());
+	}
+}
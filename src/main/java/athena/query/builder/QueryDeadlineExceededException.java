@@ -0,0 +1,32 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+/**
+ * Thrown when a query generation request waited past its deadline before it
+ * could be rendered.
+ */
+public class QueryDeadlineExceededException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String MESSAGE = "Query generation deadline exceeded, retry later";
+
+	public QueryDeadlineExceededException() {
+		super(MESSAGE);
+	}
+}
@@ -0,0 +1,159 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded executor generating queries off the servlet container threads.
+ * 
+ * Requests are admitted while a worker or a queue slot is free, otherwise
+ * they are rejected immediately. Every admitted request gets a deadline and
+ * is dropped before rendering if it waited in the queue past it.
+ * 
+ * A queue capacity of 0 disables queueing: requests are handed directly to an
+ * idle worker and rejected when none is free.
+ */
+@Slf4j
+@Component
+public class QueryGenerationExecutor {
+
+	private final ThreadPoolExecutor executor;
+
+	private final AthenaProperties athenaProperties;
+
+	public QueryGenerationExecutor(AthenaProperties athenaProperties) {
+		this.athenaProperties = athenaProperties;
+		if (athenaProperties.getQueryExecutorThreads() < 0) {
+			throw new IllegalArgumentException("aws.athena.query-executor-threads must be >= 0 (0 = one per processor), got "
+					+ athenaProperties.getQueryExecutorThreads());
+		}
+		if (athenaProperties.getQueryExecutorQueueCapacity() < 0) {
+			throw new IllegalArgumentException("aws.athena.query-executor-queue-capacity must be >= 0 (0 = no queueing), got "
+					+ athenaProperties.getQueryExecutorQueueCapacity());
+		}
+		int threads = athenaProperties.getQueryExecutorThreads() > 0 ? athenaProperties.getQueryExecutorThreads()
+				: Runtime.getRuntime().availableProcessors();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				newQueue(athenaProperties.getQueryExecutorQueueCapacity()), new QueryGenerationThreadFactory(),
+				new ThreadPoolExecutor.AbortPolicy());
+		log.info("action=init_query_generation_executor, threads=" + threads + ", queue_capacity="
+				+ athenaProperties.getQueryExecutorQueueCapacity());
+	}
+
+	/**
+	 * Submits query generation work with a deadline of
+	 * aws.athena.query-deadline-ms from now.
+	 * 
+	 * @param work
+	 * @return future completed with the result of work, or exceptionally with
+	 *         {@link QueryDeadlineExceededException} if the deadline passed
+	 *         before work started
+	 * @throws RejectedExecutionException if the executor is saturated
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> work) {
+		return submitWithDeadline(deadline -> work.get());
+	}
+
+	/**
+	 * Same as {@link #submit(Supplier)}, but hands the deadline to work so that
+	 * long running work, e.g. a batch of queries, can stop once it has passed.
+	 * 
+	 * @param work
+	 * @return future completed with the result of work, or exceptionally with
+	 *         {@link QueryDeadlineExceededException} if the deadline passed
+	 *         before work started
+	 * @throws RejectedExecutionException if the executor is saturated
+	 */
+	public <T> CompletableFuture<T> submitWithDeadline(Function<Deadline, T> work) {
+		Deadline deadline = new Deadline(
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(athenaProperties.getQueryDeadlineMs()));
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			executor.execute(() -> {
+				if (deadline.isExceeded()) {
+					log.warn("action=generate_query, message=deadline_exceeded_before_rendering");
+					future.completeExceptionally(new QueryDeadlineExceededException());
+					return;
+				}
+				try {
+					future.complete(work.apply(deadline));
+				} catch (Throwable t) {
+					future.completeExceptionally(t);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			log.warn("action=generate_query, message=query_generation_executor_saturated, queued=" + executor.getQueue().size());
+			throw e;
+		}
+		return future;
+	}
+
+	private static BlockingQueue<Runnable> newQueue(int capacity) {
+		if (capacity == 0) {
+			return new SynchronousQueue<Runnable>();
+		}
+		return new ArrayBlockingQueue<Runnable>(capacity);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Point in time after which admitted work should no longer be started.
+	 */
+	public static final class Deadline {
+		private final long nanos;
+
+		Deadline(long nanos) {
+			this.nanos = nanos;
+		}
+
+		public boolean isExceeded() {
+			return System.nanoTime() - nanos > 0;
+		}
+	}
+
+	private static final class QueryGenerationThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "query-generation-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
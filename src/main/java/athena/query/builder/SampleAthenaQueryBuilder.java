@@ -2,6 +2,7 @@ package athena.query.builder;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Application start class
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @author fraser.sequeira
  */
 @SpringBootApplication
+@EnableScheduling
 public class SampleAthenaQueryBuilder {
 
 	public static void main(String[] args) {
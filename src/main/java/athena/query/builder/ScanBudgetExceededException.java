@@ -0,0 +1,49 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.time.LocalDate;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import lombok.Getter;
+
+/**
+ * Thrown when the estimated scan of a query exceeds its byte budget.
+ */
+@Getter
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class ScanBudgetExceededException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final ScanEstimate estimate;
+	private final long budgetBytes;
+	// Latest fromDate that fits the budget, null if even toDate alone exceeds it
+	private final LocalDate narrowedFromDate;
+
+	public ScanBudgetExceededException(ScanEstimate estimate, long budgetBytes, LocalDate narrowedFromDate) {
+		super("Estimated scan of " + estimate.getEstimatedBytes() + " bytes over " + estimate.getPartitionCount()
+				+ " partitions exceeds budget of " + budgetBytes + " bytes. "
+				+ (narrowedFromDate == null ? "Narrow the date window."
+						: "Narrow the date window, e.g. fromDate=" + narrowedFromDate + "."));
+		this.estimate = estimate;
+		this.budgetBytes = budgetBytes;
+		this.narrowedFromDate = narrowedFromDate;
+	}
+}
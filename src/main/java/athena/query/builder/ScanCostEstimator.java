@@ -0,0 +1,127 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import static java.time.temporal.TemporalAdjusters.lastDayOfMonth;
+
+/**
+ * Estimates the bytes an Athena query will scan from its DateFilters using
+ * per-partition size statistics, and applies the configured scan budget.
+ */
+@Slf4j
+@Service
+@AllArgsConstructor
+public class ScanCostEstimator {
+
+	private PartitionStatistics partitionStatistics;
+
+	private AthenaProperties athenaProperties;
+
+	/**
+	 * Sums the statistics of every partition selected by the DateFilters.
+	 * 
+	 * <pre>
+	 *     Year -> 2019                         : whole year
+	 *     Year -> 2020, Months -> 01,02        : each whole month
+	 *     Year -> 2020, Month -> 04, Days -> 01: each day
+	 * </pre>
+	 * 
+	 * @param dateFilters
+	 * @return estimate, with -1 bytes and partitions if no statistics are loaded
+	 */
+	public ScanEstimate estimate(List<DateFilter> dateFilters) {
+		if (!partitionStatistics.isLoaded()) {
+			return new ScanEstimate(-1, -1);
+		}
+		long bytes = 0;
+		int partitions = 0;
+		for (DateFilter filter : dateFilters) {
+			int year = Integer.parseInt(filter.getYear());
+			if (filter.hasOnlyYear()) {
+				LocalDate from = LocalDate.of(year, Month.JANUARY, 1);
+				LocalDate to = LocalDate.of(year, Month.DECEMBER, 31);
+				bytes += partitionStatistics.getBytes(from, to);
+				partitions += partitionStatistics.getPartitionCount(from, to);
+				continue;
+			}
+			for (String month : filter.getMonths()) {
+				LocalDate firstOfMonth = LocalDate.of(year, Integer.parseInt(month), 1);
+				if (filter.hasOnlyYearMonth()) {
+					LocalDate lastOfMonth = firstOfMonth.with(lastDayOfMonth());
+					bytes += partitionStatistics.getBytes(firstOfMonth, lastOfMonth);
+					partitions += partitionStatistics.getPartitionCount(firstOfMonth, lastOfMonth);
+					continue;
+				}
+				for (String day : filter.getDays()) {
+					int dayOfMonth = Integer.parseInt(day);
+					if (dayOfMonth <= firstOfMonth.lengthOfMonth()) {
+						LocalDate date = firstOfMonth.withDayOfMonth(dayOfMonth);
+						bytes += partitionStatistics.getBytes(date, date);
+						partitions += partitionStatistics.getPartitionCount(date, date);
+					}
+				}
+			}
+		}
+		log.debug("action=estimate_scan, estimated_bytes=" + bytes + ", partitions=" + partitions);
+		return new ScanEstimate(bytes, partitions);
+	}
+
+	/**
+	 * @param requestBudgetBytes budget requested by the client, 0 or null for
+	 *                           none
+	 * @return smallest of the configured and requested budget, 0 if neither
+	 *         applies
+	 */
+	public long getBudget(Long requestBudgetBytes) {
+		long budget = athenaProperties.getScanBudgetBytes();
+		if (requestBudgetBytes != null && requestBudgetBytes > 0) {
+			budget = budget > 0 ? Math.min(budget, requestBudgetBytes) : requestBudgetBytes;
+		}
+		return budget;
+	}
+
+	/**
+	 * Finds the latest fromDate for which the range up to toDate fits the
+	 * budget.
+	 * 
+	 * @param fromDate
+	 * @param toDate
+	 * @param budgetBytes
+	 * @return narrowed fromDate, or null if toDate alone exceeds the budget
+	 */
+	public LocalDate getNarrowedFromDate(LocalDate fromDate, LocalDate toDate, long budgetBytes) {
+		long bytes = 0;
+		LocalDate date = toDate;
+		while (!date.isBefore(fromDate)) {
+			bytes += partitionStatistics.getBytes(date, date);
+			if (bytes > budgetBytes) {
+				return date.equals(toDate) ? null : date.plusDays(1);
+			}
+			date = date.minusDays(1);
+		}
+		return fromDate;
+	}
+}
@@ -0,0 +1,42 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+/**
+ * Store of generated queries shared by all replicas of the service, used as
+ * the second tier of {@link GeneratedQueryCache}.
+ * 
+ * Implementations may drop entries at any time and must never return a value
+ * stored under a different key.
+ */
+public interface SharedQueryStore {
+
+	/**
+	 * @param key
+	 * @return stored query or null if absent
+	 */
+	String get(String key);
+
+	/**
+	 * Stores a query, possibly evicting other entries. Entries that cannot be
+	 * stored are silently ignored.
+	 * 
+	 * @param key
+	 * @param query
+	 */
+	void put(String key, String query);
+}
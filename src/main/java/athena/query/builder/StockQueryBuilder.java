@@ -16,17 +16,24 @@ package athena.query.builder;
  * limitations under the License.
  * 
  * */
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
 
 import org.eclipse.collections.api.list.MutableList;
 import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.list.mutable.FastList;
 import org.springframework.stereotype.Service;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.sql.SQLBindings;
 import com.querydsl.sql.SQLQuery;
 
 import lombok.AllArgsConstructor;
@@ -45,10 +52,25 @@ import lombok.extern.slf4j.Slf4j;
 @AllArgsConstructor
 public class StockQueryBuilder {
 
+	private static final MutableList<String> PRODUCT_CATEGORIES = Lists.mutable.of("toys", "mobiles", "essentials");
+	private static final String FURNITURE_CATEGORY = "furnitures";
+	private static final String SOFA_PRODUCT = "sofa";
+	private static final String QUERY_TEMPLATE_VERSION = "2";
+	private static final String BRAND_LOOKUP = "brand_lookup";
+	private static final String BRAND_LOOKUP_COLUMN = "brand";
+	// Constant template, so QueryDSL parses and caches it only once
+	private static final String BRAND_LOOKUP_PREDICATE = "{0} in (select " + BRAND_LOOKUP_COLUMN + " from " + BRAND_LOOKUP + ")";
+
 	private AthenaQueryBuilder queryBuilder;
 
 	private AthenaProperties athenaProperties;
 
+	private PreparedStatementCache statementCache;
+
+	private ScanCostEstimator scanCostEstimator;
+
+	private GeneratedQueryCache queryCache;
+
 	/**
 	 * Generates an Athena Compatible query to retrieve stock data from
 	 * Athena.
@@ -63,12 +85,171 @@ public class StockQueryBuilder {
 	 */
 	public String getQueryString(LocalDate fromDate, LocalDate toDate, List<String> brands) {
 		log.debug("action=get_query_string, from_date=" + fromDate.toString() + " , to_date_time=" + toDate);
+		return getQueryString(Collections.singletonList(new DateRange(fromDate, toDate)), brands);
+	}
+
+	/**
+	 * Generates an Athena Compatible query to retrieve stock data of several,
+	 * possibly overlapping, date ranges from Athena. Queries are cached by
+	 * canonical request, i.e. merged date ranges and sorted distinct brands.
+	 * 
+	 * @param dateRanges
+	 * @param brands
+	 * @return
+	 */
+	public String getQueryString(List<DateRange> dateRanges, List<String> brands) {
+		log.debug("action=get_query_string, date_ranges=" + dateRanges);
+		List<DateRange> mergedRanges = queryBuilder.mergeDateRanges(dateRanges);
+		List<String> canonicalBrands = brands == null ? FastList.newList() : FastList.newList(new TreeSet<String>(brands));
+		return queryCache.get(getQueryVersion(), getCanonicalRequest(mergedRanges, canonicalBrands), () -> {
+			String query = renderQuery(queryBuilder.getDateFilters(mergedRanges), canonicalBrands);
+			log.info("action=get_query_string, query=" + query);
+			return query;
+		});
+	}
+
+	/**
+	 * Generates an Athena prepared statement to retrieve stock data from Athena
+	 * along with its ordered parameters. IN-lists are padded to fixed arity
+	 * buckets so that requests share a small number of statement shapes, and
+	 * each shape is rendered only once.
+	 * 
+	 * @param fromDate
+	 * @param toDate
+	 * @param brands
+	 * @return
+	 * @throws InvalidDateRangeException if fromDate is after toDate
+	 */
+	public AthenaPreparedQuery getPreparedQuery(LocalDate fromDate, LocalDate toDate, List<String> brands) {
+		log.debug("action=get_prepared_query, from_date=" + fromDate.toString() + " , to_date_time=" + toDate);
+		queryBuilder.checkDateRange(fromDate, toDate);
+		int bucketSize = athenaProperties.getInListBucketSize();
+		List<DateFilter> dateFilters = queryBuilder.padDateFilters(queryBuilder.getDateFilters(fromDate, toDate), bucketSize);
+		List<String> paddedBrands = queryBuilder.padToArity(brands, bucketSize);
+
+		List<Object> parameters = FastList.newList();
+		String shape = getStatementShape(dateFilters, paddedBrands, parameters);
+		PreparedStatementCache.Statement statement = statementCache.get(shape);
+		if (statement == null) {
+			SQLQuery<?> query = queryBuilder.getAthenaSQLQueryInstance(false);
+			buildQuery(query, dateFilters, paddedBrands, false);
+			SQLBindings bindings = query.getSQL();
+			if (!parameters.equals(bindings.getNullFriendlyBindings())) {
+				// Never cache a statement whose parameters we cannot reproduce
+				log.error("action=get_prepared_query, message=statement_parameters_mismatch, shape=" + shape);
+				statement = statementCache.newStatement(bindings.getSQL());
+				return toPreparedQuery(statement, bindings.getNullFriendlyBindings());
+			}
+			statement = statementCache.put(shape, bindings.getSQL());
+			log.info("action=get_prepared_query, shape=" + shape + ", statement=" + statement.getSql());
+		}
+		return toPreparedQuery(statement, parameters);
+	}
+
+	private AthenaPreparedQuery toPreparedQuery(PreparedStatementCache.Statement statement, List<Object> parameters) {
+		List<String> literals = FastList.newList(parameters.size());
+		parameters.forEach(parameter -> literals.add(queryBuilder.toAthenaLiteral(parameter)));
+		StringBuilder execute = new StringBuilder("EXECUTE ").append(statement.getName());
+		if (!literals.isEmpty()) {
+			execute.append(" USING ").append(String.join(", ", literals));
+		}
+		return new AthenaPreparedQuery(statement.getName(), statement.getSql(), literals, execute.toString());
+	}
+
+	/**
+	 * Generates an Athena Compatible query along with the bytes and partitions
+	 * it is estimated to scan. The estimate is computed before rendering and
+	 * the query is rejected if it exceeds the scan budget. Queries within
+	 * budget are generated and cached like {@link #getQueryString}.
+	 * 
+	 * @param fromDate
+	 * @param toDate
+	 * @param brands
+	 * @param maxScanBytes budget requested by the client, may be null
+	 * @return
+	 * @throws InvalidDateRangeException  if fromDate is after toDate
+	 * @throws ScanBudgetExceededException if the estimate exceeds the budget
+	 */
+	public AthenaQueryEstimate getEstimatedQuery(LocalDate fromDate, LocalDate toDate, List<String> brands,
+			Long maxScanBytes) {
+		log.debug("action=get_estimated_query, from_date=" + fromDate.toString() + " , to_date_time=" + toDate);
+		queryBuilder.checkDateRange(fromDate, toDate);
+		List<DateFilter> dateFilters = queryBuilder.getDateFilters(fromDate, toDate);
+		ScanEstimate estimate = scanCostEstimator.estimate(dateFilters);
+		long budget = scanCostEstimator.getBudget(maxScanBytes);
+		if (budget > 0 && estimate.isKnown() && estimate.getEstimatedBytes() > budget) {
+			log.warn("action=get_estimated_query, message=scan_budget_exceeded, estimated_bytes="
+					+ estimate.getEstimatedBytes() + ", budget_bytes=" + budget);
+			throw new ScanBudgetExceededException(estimate, budget,
+					scanCostEstimator.getNarrowedFromDate(fromDate, toDate, budget));
+		}
+		String query = getQueryString(fromDate, toDate, brands);
+		log.info("action=get_estimated_query, estimated_bytes=" + estimate.getEstimatedBytes() + ", query=" + query);
+		return new AthenaQueryEstimate(query, estimate.getEstimatedBytes(), estimate.getPartitionCount(), budget);
+	}
+
+	/**
+	 * Identifies everything besides the request that the generated query
+	 * depends on. Bump QUERY_TEMPLATE_VERSION whenever buildQuery or the SQL
+	 * template changes.
+	 * 
+	 * @return
+	 */
+	private String getQueryVersion() {
+		String version = QUERY_TEMPLATE_VERSION + "|" + athenaProperties.getTable() + "|" + StockEntity.STOCK_ID + ","
+				+ StockEntity.BRAND_NAME + "," + StockEntity.PRODUCT_NAME + "," + StockEntity.PRODUCT_CATEGORY + ","
+				+ StockEntity.SHIPPED_TIMESTAMP + "|" + queryBuilder.getTemplate().getClass().getName() + "|"
+				+ queryBuilder.getPartitionManifest().getVersion() + "|" + athenaProperties.getBrandLookupThreshold();
+		return UUID.nameUUIDFromBytes(version.getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	private String getCanonicalRequest(List<DateRange> mergedRanges, List<String> canonicalBrands) {
+		StringBuilder request = new StringBuilder();
+		mergedRanges.forEach(range -> request.append(range.getFromDate()).append('/').append(range.getToDate()).append(';'));
+		// Length prefixed so that brands containing separators stay unambiguous
+		canonicalBrands.forEach(brand -> request.append('|').append(brand.length()).append(':').append(brand));
+		return request.toString();
+	}
+
+	/**
+	 * Renders the query with literals. Brand lists above
+	 * aws.athena.brand-lookup-threshold are filtered against an inline VALUES
+	 * relation instead of an IN-list.
+	 * 
+	 * <pre>
+	 *     WITH brand_lookup (brand) AS (VALUES ('Nokia'), ('Tesla'))
+	 *     SELECT ... WHERE ... AND "brandname" in (select brand from brand_lookup) ...
+	 * </pre>
+	 * 
+	 * @param dateFilters
+	 * @param brands
+	 * @return
+	 */
+	private String renderQuery(List<DateFilter> dateFilters, List<String> brands) {
 		SQLQuery<?> query = queryBuilder.getAthenaSQLQueryInstance();
+		int threshold = athenaProperties.getBrandLookupThreshold();
+		boolean brandLookup = threshold > 0 && brands != null && brands.size() > threshold;
+		buildQuery(query, dateFilters, brands, brandLookup);
+		if (!brandLookup) {
+			return query.toString();
+		}
+		log.debug("action=render_query, message=using_brand_lookup, brands=" + brands.size());
+		String sql = query.toString();
+		StringBuilder builder = new StringBuilder(sql.length() + brands.size() * 24);
+		queryBuilder.appendValuesRelation(builder, BRAND_LOOKUP, BRAND_LOOKUP_COLUMN, brands);
+		return builder.append(' ').append(sql).toString();
+	}
+
+	private void buildQuery(SQLQuery<?> query, List<DateFilter> dateFilters, List<String> brands, boolean brandLookup) {
 		PathBuilder<StockEntity> entity = new PathBuilder<StockEntity>(StockEntity.class, athenaProperties.getTable());
 		// Append partition keys to where clause of athena Query
-		queryBuilder.applyDateFiltersToQuery(fromDate, toDate, query, entity.get("year"), entity.get("month"), entity.get("day"));
-		// Add brands
-		query.where(entity.get(StockEntity.BRAND_NAME).in(brands));
+		queryBuilder.applyDateFiltersToQuery(dateFilters, query, entity.get("year"), entity.get("month"), entity.get("day"));
+		// Add brands, the brand lookup relation itself is prepended by renderQuery
+		if (brandLookup) {
+			query.where(Expressions.booleanTemplate(BRAND_LOOKUP_PREDICATE, entity.get(StockEntity.BRAND_NAME)));
+		} else {
+			query.where(entity.get(StockEntity.BRAND_NAME).in(brands));
+		}
 		// Add Product Filters
 		applyProductFilters(query, entity);
 		// Add selections
@@ -76,18 +257,51 @@ public class StockQueryBuilder {
 		// Order BY Shipped_timestamp desc
 		query.orderBy(entity.getString(StockEntity.SHIPPED_TIMESTAMP).desc());
 		query.from(entity);
-		log.info("action=get_query_string, query=" + query.toString());
-		return query.toString();
+	}
+
+	/**
+	 * Computes the shape of the prepared statement and collects its parameters
+	 * in the order they are bound by {@link #buildQuery}.
+	 * 
+	 * @param dateFilters
+	 * @param brands
+	 * @param parameters
+	 * @return shape key
+	 */
+	private String getStatementShape(List<DateFilter> dateFilters, List<String> brands, List<Object> parameters) {
+		StringBuilder shape = new StringBuilder();
+		for (DateFilter filter : dateFilters) {
+			if (filter.hasYearMonthDay()) {
+				shape.append("ymd").append(filter.getMonths().size()).append(',').append(filter.getDays().size());
+				parameters.add(filter.getYear());
+				parameters.addAll(filter.getMonths());
+				parameters.addAll(filter.getDays());
+			} else if (filter.hasOnlyYearMonth()) {
+				shape.append("ym").append(filter.getMonths().size());
+				parameters.add(filter.getYear());
+				parameters.addAll(filter.getMonths());
+			} else if (filter.hasOnlyYear()) {
+				shape.append("y");
+				parameters.add(filter.getYear());
+			}
+			shape.append(';');
+		}
+		shape.append("b").append(brands == null ? 0 : brands.size());
+		if (brands != null) {
+			parameters.addAll(brands);
+		}
+		parameters.addAll(PRODUCT_CATEGORIES);
+		parameters.add(FURNITURE_CATEGORY);
+		parameters.add(SOFA_PRODUCT);
+		return shape.toString();
 	}
 
 	private void applyProductFilters(SQLQuery<?> query, PathBuilder<StockEntity> entity) {
-		MutableList<String> productCategories = Lists.mutable.of("toys", "mobiles",
-				"essentials");
 		BooleanBuilder boolOperationPredicates = new BooleanBuilder();
 
-		BooleanExpression predicate1 = entity.get(StockEntity.PRODUCT_CATEGORY).in(productCategories);
-		BooleanExpression predicate2 = entity.get(StockEntity.PRODUCT_CATEGORY).eq("furnitures")
-				.and(entity.get(StockEntity.PRODUCT_NAME).eq("sofa"));
+		BooleanExpression predicate1 = entity.get(StockEntity.PRODUCT_CATEGORY).in(PRODUCT_CATEGORIES);
+		BooleanExpression predicate2 = entity.get(StockEntity.PRODUCT_CATEGORY).eq(FURNITURE_CATEGORY)
+				.and(entity.get(StockEntity.PRODUCT_NAME).eq(SOFA_PRODUCT));
 
 		boolOperationPredicates.or(predicate1).or(predicate2);
 		query.where(boolOperationPredicates);
@@ -16,8 +16,11 @@ package athena.query.builder;
  * limitations under the License.
  * 
  **/
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Class holds helper functions for re-usability.
@@ -27,6 +30,8 @@ import java.util.Map;
  * */
 public class Utils {
 
+	private static final Pattern HIVE_PARTITION = Pattern.compile("year=(\\d{4})/month=(\\d{1,2})/day=(\\d{1,2})");
+
 	public static boolean isEmpty(List list) {
 		return list == null || list.size() == 0;
 	}
@@ -42,4 +47,21 @@ public class Utils {
 	public static boolean notEmpty(Map map) {
 		return map != null && map.size() > 0;
 	}
+	
+	/**
+	 * Parses a date partition written either as 2020-04-09 or as
+	 * year=2020/month=04/day=09.
+	 * 
+	 * @param partition
+	 * @return partition date
+	 * @throws java.time.DateTimeException if partition is not a valid date
+	 */
+	public static LocalDate parsePartitionDate(String partition) {
+		Matcher matcher = HIVE_PARTITION.matcher(partition);
+		if (matcher.find()) {
+			return LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+					Integer.parseInt(matcher.group(3)));
+		}
+		return LocalDate.parse(partition);
+	}
 }
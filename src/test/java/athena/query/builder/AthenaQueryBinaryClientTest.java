@@ -0,0 +1,107 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class AthenaQueryBinaryClientTest {
+
+	private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger rejections = new AtomicInteger();
+
+	private HttpServer server;
+
+	private AthenaQueryBinaryClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext(AthenaQueryBinaryClient.PATH, exchange -> {
+			connections.add(exchange.getRemoteAddress());
+			try (InputStream in = exchange.getRequestBody()) {
+				while (in.read() != -1) {
+					// Consume the request
+				}
+			}
+			byte[] response;
+			if (rejections.getAndDecrement() > 0) {
+				response = "Too many query generation requests, retry later".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Retry-After", "1");
+				exchange.sendResponseHeaders(429, response.length);
+			} else {
+				response = BinaryQueryCodec.encodeResponses(Arrays.asList(BinaryQueryResult.success("select 1")));
+				exchange.sendResponseHeaders(200, response.length);
+			}
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(response);
+			}
+		});
+		server.start();
+		client = new AthenaQueryBinaryClient("http://localhost:" + server.getAddress().getPort());
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	private static List<MultiRangeQueryRequest> requests() {
+		MultiRangeQueryRequest request = new MultiRangeQueryRequest();
+		request.setDateRanges(Collections.<DateRange>emptyList());
+		request.setBrands(Arrays.asList("Nokia"));
+		return Arrays.asList(request);
+	}
+
+	@Test
+	public void callsReuseTheConnection() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			assertThat(client.generate(requests())).containsExactly(BinaryQueryResult.success("select 1"));
+		}
+
+		assertThat(connections).hasSize(1);
+	}
+
+	@Test
+	public void rejectedCallsKeepTheConnection() throws IOException {
+		rejections.set(1);
+
+		assertThatThrownBy(() -> client.generate(requests())).isInstanceOf(IOException.class).hasMessageContaining("429")
+				.hasMessageContaining("retry after 1s");
+		assertThat(client.generate(requests())).hasSize(1);
+		assertThat(connections).hasSize(1);
+	}
+}
@@ -0,0 +1,221 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AthenaQueryBuilderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AthenaProperties athenaProperties;
+
+	private PartitionManifest partitionManifest;
+
+	private AthenaQueryBuilder queryBuilder;
+
+	@Before
+	public void setUp() {
+		athenaProperties = new AthenaProperties();
+		partitionManifest = new PartitionManifest(athenaProperties);
+		queryBuilder = new AthenaQueryBuilder(partitionManifest);
+	}
+
+	private void loadManifest(String... partitions) throws IOException {
+		File file = folder.newFile();
+		PartitionManifestTest.writeManifest(file, PartitionManifestTest.MANIFEST_MODIFIED, partitions);
+		athenaProperties.setPartitionManifestPath(file.getAbsolutePath());
+		partitionManifest.refresh();
+	}
+
+	private static DateFilter filter(int year, List<String> months, List<String> days) {
+		return new DateFilter(year, months, days);
+	}
+
+	@Test
+	public void manifestKeepsOnlyExistingDaysOfPartiallyCoveredMonth() throws IOException {
+		loadManifest("2019-03-05");
+
+		// Must not widen to year = 2019 or month = 03, unlisted partitions may exist outside the range
+		assertThat(queryBuilder.getDateFilters(LocalDate.of(2019, 3, 1), LocalDate.of(2019, 3, 10)))
+				.containsExactly(filter(2019, Arrays.asList("03"), Arrays.asList("05")));
+	}
+
+	@Test
+	public void manifestCollapsesOnlyFullyCoveredMonthsAndYears() throws IOException {
+		loadManifest("2018-07-01", "2019-02-10", "2019-04-01");
+
+		assertThat(queryBuilder.getDateFilters(LocalDate.of(2019, 1, 15), LocalDate.of(2019, 4, 15))).containsExactly(
+				filter(2019, Arrays.asList("04"), Arrays.asList("01")), filter(2019, Arrays.asList("02"), null));
+		assertThat(queryBuilder.getDateFilters(LocalDate.of(2019, 2, 1), LocalDate.of(2019, 2, 28)))
+				.containsExactly(filter(2019, Arrays.asList("02"), null));
+		// 2017 has no partitions and is dropped
+		assertThat(queryBuilder.getDateFilters(LocalDate.of(2017, 1, 1), LocalDate.of(2018, 12, 31)))
+				.containsExactly(filter(2018, null, null));
+	}
+
+	@Test
+	public void manifestHandlesLeapDay() throws IOException {
+		loadManifest("2020-02-29");
+
+		assertThat(queryBuilder.getDateFilters(LocalDate.of(2020, 2, 20), LocalDate.of(2020, 3, 5)))
+				.containsExactly(filter(2020, Arrays.asList("02"), Arrays.asList("29")));
+		assertThat(queryBuilder.getDateFilters(LocalDate.of(2020, 2, 1), LocalDate.of(2020, 2, 29)))
+				.containsExactly(filter(2020, Arrays.asList("02"), null));
+	}
+
+	@Test
+	public void manifestKeepsDaysFromModificationDate() throws IOException {
+		loadManifest("2021-06-11");
+
+		assertThat(queryBuilder.getDateFilters(LocalDate.of(2021, 6, 10), LocalDate.of(2021, 6, 17)))
+				.containsExactly(filter(2021, Arrays.asList("06"), Arrays.asList("11", "15", "16", "17")));
+	}
+
+	@Test
+	public void manifestWithoutPartitionsInRangeFallsBackToCalendarFilters() throws IOException {
+		List<DateFilter> calendarFilters = queryBuilder.getDateFilters(LocalDate.of(2019, 3, 1), LocalDate.of(2019, 3, 10));
+		loadManifest("2018-07-01");
+
+		assertThat(queryBuilder.getDateFilters(LocalDate.of(2019, 3, 1), LocalDate.of(2019, 3, 10)))
+				.isEqualTo(calendarFilters);
+	}
+
+	@Test
+	public void padToArityRepeatsLastValueUpToNextBucket() {
+		assertThat(queryBuilder.padToArity(Arrays.asList("09", "10", "11"), 4)).containsExactly("09", "10", "11", "11");
+		assertThat(queryBuilder.padToArity(Arrays.asList("01", "02", "03", "04", "05"), 4)).hasSize(8).endsWith("05");
+	}
+
+	@Test
+	public void padToArityKeepsListsAlreadyOnABucket() {
+		List<String> values = Arrays.asList("01", "02", "03", "04");
+		assertThat(queryBuilder.padToArity(values, 4)).isSameAs(values);
+		assertThat(queryBuilder.padToArity(values, 1)).isSameAs(values);
+		assertThat(queryBuilder.padToArity(null, 4)).isNull();
+	}
+
+	@Test
+	public void toAthenaLiteralQuotesAndEscapesStrings() {
+		assertThat(queryBuilder.toAthenaLiteral("Nokia")).isEqualTo("'Nokia'");
+		assertThat(queryBuilder.toAthenaLiteral("Tesla's")).isEqualTo("'Tesla''s'");
+		assertThat(queryBuilder.toAthenaLiteral("''")).isEqualTo("''''''");
+		assertThat(queryBuilder.toAthenaLiteral("2020")).isEqualTo("'2020'");
+		assertThat(queryBuilder.toAthenaLiteral(2020)).isEqualTo("2020");
+		assertThat(queryBuilder.toAthenaLiteral(null)).isEqualTo("NULL");
+	}
+
+	private static DateRange range(String fromDate, String toDate) {
+		return new DateRange(LocalDate.parse(fromDate), LocalDate.parse(toDate));
+	}
+
+	@Test
+	public void mergeDateRangesSortsAndCoalescesOverlappingAndAdjacentRanges() {
+		List<DateRange> ranges = new ArrayList<DateRange>(Arrays.asList(range("2020-03-01", "2020-03-10"),
+				range("2020-01-01", "2020-01-31"), range("2020-02-01", "2020-02-15"), range("2020-03-05", "2020-03-20")));
+		List<DateRange> original = new ArrayList<DateRange>(ranges);
+
+		assertThat(queryBuilder.mergeDateRanges(ranges)).containsExactly(range("2020-01-01", "2020-02-15"),
+				range("2020-03-01", "2020-03-20"));
+		assertThat(ranges).isEqualTo(original);
+	}
+
+	@Test
+	public void mergeDateRangesAbsorbsContainedRanges() {
+		assertThat(queryBuilder.mergeDateRanges(Arrays.asList(range("2020-01-01", "2020-01-31"),
+				range("2020-01-05", "2020-01-10")))).containsExactly(range("2020-01-01", "2020-01-31"));
+		assertThat(queryBuilder.mergeDateRanges(Arrays.asList(range("2020-01-01", "2020-01-10"),
+				range("2020-01-12", "2020-01-20")))).hasSize(2);
+	}
+
+	@Test
+	public void mergeDateRangesRejectsInvalidRanges() {
+		assertThatThrownBy(() -> queryBuilder.mergeDateRanges(Collections.<DateRange>emptyList()))
+				.isInstanceOf(InvalidDateRangeException.class);
+		assertThatThrownBy(() -> queryBuilder.mergeDateRanges(Arrays.asList(new DateRange(LocalDate.of(2020, 1, 1), null))))
+				.isInstanceOf(InvalidDateRangeException.class);
+		assertThatThrownBy(() -> queryBuilder.mergeDateRanges(Arrays.asList(range("2020-02-01", "2020-01-01"))))
+				.isInstanceOf(InvalidDateRangeException.class);
+	}
+
+	@Test
+	public void multiRangeDateFiltersCombineDaysOfSameMonth() {
+		assertThat(queryBuilder.getDateFilters(Arrays.asList(range("2020-01-05", "2020-01-10"),
+				range("2020-01-08", "2020-01-12"), range("2020-01-20", "2020-01-21"))))
+				.containsExactly(filter(2020, Arrays.asList("01"),
+						Arrays.asList("05", "06", "07", "08", "09", "10", "11", "12", "20", "21")));
+	}
+
+	@Test
+	public void multiRangeDateFiltersCombineWholeMonthsPerYear() {
+		assertThat(queryBuilder.getDateFilters(Arrays.asList(range("2020-05-10", "2020-05-12"),
+				range("2020-03-01", "2020-03-31"), range("2020-01-01", "2020-01-31"), range("2019-01-01", "2019-12-31"))))
+				.containsExactly(
+						filter(2019, Arrays.asList("01", "02", "03", "04", "05", "06", "07", "08", "09", "10", "11", "12"),
+								null),
+						filter(2020, Arrays.asList("01", "03"), null),
+						filter(2020, Arrays.asList("05"), Arrays.asList("10", "11", "12")));
+	}
+
+	@Test
+	public void singleRangeKeepsCalendarFilters() {
+		assertThat(queryBuilder.getDateFilters(Arrays.asList(range("2018-02-17", "2020-04-19"))))
+				.isEqualTo(queryBuilder.getDateFilters(LocalDate.of(2018, 2, 17), LocalDate.of(2020, 4, 19)));
+	}
+
+	@Test
+	public void valuesRelationEscapesEveryValue() {
+		StringBuilder sql = new StringBuilder("prefix ");
+		queryBuilder.appendValuesRelation(sql, "brand_lookup", "brand",
+				Arrays.asList("Nokia", "Tesla's", "''", "", "a\\'); drop table x; --", "Zoë"));
+
+		assertThat(sql.toString()).isEqualTo("prefix WITH brand_lookup (brand) AS (VALUES ('Nokia'), ('Tesla''s'), "
+				+ "(''''''), (''), ('a\\''); drop table x; --'), ('Zoë'))");
+	}
+
+	@Test
+	public void manifestDropsRangesWithoutPartitions() throws IOException {
+		loadManifest("2020-01-05", "2020-04-12");
+
+		assertThat(queryBuilder.getDateFilters(Arrays.asList(range("2020-01-01", "2020-01-10"),
+				range("2020-03-01", "2020-03-05")))).containsExactly(filter(2020, Arrays.asList("01"), Arrays.asList("05")));
+	}
+
+	@Test
+	public void manifestFallsBackToCalendarWhenNoRangeHasPartitions() throws IOException {
+		loadManifest("2020-04-12");
+
+		assertThat(queryBuilder.getDateFilters(Arrays.asList(range("2020-01-01", "2020-01-02"),
+				range("2020-03-01", "2020-03-02")))).containsExactly(filter(2020, Arrays.asList("01"), Arrays.asList("01", "02")),
+						filter(2020, Arrays.asList("03"), Arrays.asList("01", "02")));
+	}
+}
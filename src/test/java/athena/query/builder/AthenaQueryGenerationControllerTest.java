@@ -0,0 +1,187 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class AthenaQueryGenerationControllerTest {
+
+	private static final String RETRY_AFTER_SECONDS = "7";
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private AthenaProperties athenaProperties;
+
+	private QueryGenerationExecutor executor;
+
+	private MockMvc mockMvc;
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	private void setUp(int queueCapacity, long deadlineMs) {
+		athenaProperties = new AthenaProperties();
+		athenaProperties.setTable("STOCK-DATA-STORE");
+		athenaProperties.setQueryExecutorThreads(1);
+		athenaProperties.setQueryExecutorQueueCapacity(queueCapacity);
+		athenaProperties.setQueryDeadlineMs(deadlineMs);
+		athenaProperties.setRetryAfterSeconds(Integer.parseInt(RETRY_AFTER_SECONDS));
+		StockQueryBuilder stockQueryBuilder = new StockQueryBuilder(
+				new AthenaQueryBuilder(new PartitionManifest(athenaProperties)), athenaProperties,
+				new PreparedStatementCache(athenaProperties),
+				new ScanCostEstimator(new PartitionStatistics(athenaProperties), athenaProperties),
+				new GeneratedQueryCache(athenaProperties,
+						new DefaultListableBeanFactory().getBeanProvider(SharedQueryStore.class)));
+		executor = new QueryGenerationExecutor(athenaProperties);
+		mockMvc = MockMvcBuilders
+				.standaloneSetup(new AthenaQueryGenerationController(stockQueryBuilder, executor, athenaProperties))
+				.build();
+	}
+
+	private void occupyWorker() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		executor.submit(() -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private static RequestBuilder queryRequest(String fromDate, String toDate) {
+		return post("/generate/athena/query").param("fromDate", fromDate).param("toDate", toDate)
+				.contentType(MediaType.APPLICATION_JSON).content("[\"Nokia\"]");
+	}
+
+	private MvcResult performAsync(RequestBuilder requestBuilder) throws Exception {
+		MvcResult result = mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+		result.getAsyncResult(TimeUnit.SECONDS.toMillis(5));
+		return result;
+	}
+
+	@Test
+	public void generatesQueryAsynchronously() throws Exception {
+		setUp(1, 2000);
+
+		mockMvc.perform(asyncDispatch(performAsync(queryRequest("2020-04-09", "2020-04-19"))))
+				.andExpect(status().isOk()).andExpect(content().string(containsString("'Nokia'")));
+	}
+
+	@Test
+	public void saturatedExecutorAnswers429WithRetryAfter() throws Exception {
+		setUp(0, 2000);
+		occupyWorker();
+
+		mockMvc.perform(queryRequest("2020-04-09", "2020-04-19")).andExpect(status().isTooManyRequests())
+				.andExpect(header().string(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS));
+	}
+
+	@Test
+	public void expiredDeadlineAnswers503WithRetryAfter() throws Exception {
+		setUp(1, 50);
+		occupyWorker();
+		MvcResult result = mockMvc.perform(queryRequest("2020-04-09", "2020-04-19"))
+				.andExpect(request().asyncStarted()).andReturn();
+		Thread.sleep(100);
+		release.countDown();
+		result.getAsyncResult(TimeUnit.SECONDS.toMillis(5));
+
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable())
+				.andExpect(header().string(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS));
+	}
+
+	@Test
+	public void invalidDateRangeInsideFutureAnswers400() throws Exception {
+		setUp(1, 2000);
+
+		mockMvc.perform(asyncDispatch(performAsync(queryRequest("2020-04-19", "2020-04-09"))))
+				.andExpect(status().isBadRequest());
+	}
+
+	private static byte[] binaryRequest(String... brands) {
+		MultiRangeQueryRequest request = new MultiRangeQueryRequest();
+		request.setDateRanges(
+				Collections.singletonList(new DateRange(LocalDate.of(2020, 4, 9), LocalDate.of(2020, 4, 19))));
+		request.setBrands(Arrays.asList(brands));
+		return BinaryQueryCodec.encodeRequests(Collections.singletonList(request));
+	}
+
+	private static RequestBuilder binaryPost(byte[] body) {
+		return post(AthenaQueryBinaryClient.PATH).contentType(MediaType.APPLICATION_OCTET_STREAM)
+				.accept(MediaType.APPLICATION_OCTET_STREAM).content(body);
+	}
+
+	@Test
+	public void binaryBatchIsGenerated() throws Exception {
+		setUp(1, 2000);
+
+		MvcResult result = mockMvc.perform(asyncDispatch(performAsync(binaryPost(binaryRequest("Nokia")))))
+				.andExpect(status().isOk()).andReturn();
+		assertThat(BinaryQueryCodec.decodeResponses(result.getResponse().getContentAsByteArray()))
+				.hasSize(1).allMatch(BinaryQueryResult::isSuccess);
+	}
+
+	@Test
+	public void oversizedBinaryRequestAnswers413() throws Exception {
+		setUp(1, 2000);
+		byte[] body = binaryRequest("Nokia");
+		athenaProperties.setBinaryMaxRequestBytes(body.length - 1);
+
+		mockMvc.perform(binaryPost(body)).andExpect(status().isPayloadTooLarge());
+	}
+
+	@Test
+	public void binaryQueryWithTooManyBrandsAnswers400() throws Exception {
+		setUp(1, 2000);
+		athenaProperties.setBinaryMaxBrandsPerQuery(1);
+
+		mockMvc.perform(asyncDispatch(performAsync(binaryPost(binaryRequest("Nokia", "Tesla")))))
+				.andExpect(status().isBadRequest());
+	}
+}
@@ -0,0 +1,113 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Timing harness comparing the JSON ranges endpoint, one query per call,
+ * against the binary endpoint over a local socket. The binary endpoint runs
+ * with one query per call, isolating the cost of JSON binding from the gain
+ * of batching, and with BATCH_SIZE queries per call. Both sides use
+ * HttpURLConnection and the query cache is disabled so every
+ * query is rendered. Only runs with -Dathena.timing=true.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "aws.athena.query-cache-local-bytes=0",
+		"aws.athena.query-deadline-ms=60000" })
+public class BinaryEndpointTimingTest {
+
+	private static final int QUERIES = 2000;
+	private static final int BATCH_SIZE = 100;
+	private static final int ROUNDS = 5;
+
+	@LocalServerPort
+	private int port;
+
+	@BeforeClass
+	public static void enabled() {
+		Assume.assumeTrue(Boolean.getBoolean("athena.timing"));
+	}
+
+	private static List<MultiRangeQueryRequest> requests() {
+		List<MultiRangeQueryRequest> requests = new ArrayList<MultiRangeQueryRequest>(QUERIES);
+		for (int i = 0; i < QUERIES; i++) {
+			LocalDate fromDate = LocalDate.of(2019, 1, 1).plusDays(i % 365);
+			MultiRangeQueryRequest request = new MultiRangeQueryRequest();
+			request.setDateRanges(Arrays.asList(new DateRange(fromDate, fromDate.plusDays(30))));
+			request.setBrands(Arrays.asList("Nokia", "Tesla", "Brand" + i));
+			requests.add(request);
+		}
+		return requests;
+	}
+
+	@Test
+	public void binaryBatchesAgainstJsonCalls() throws Exception {
+		String baseUrl = "http://localhost:" + port + "/athena-query-generator";
+		RestTemplate restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory());
+		AthenaQueryBinaryClient binaryClient = new AthenaQueryBinaryClient(baseUrl, 60000);
+		List<MultiRangeQueryRequest> requests = requests();
+
+		for (int round = 0; round <= ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (MultiRangeQueryRequest request : requests) {
+				assertThat(restTemplate.postForObject(baseUrl + "/generate/athena/query/ranges", request, String.class))
+						.isNotEmpty();
+			}
+			long jsonNanos = System.nanoTime() - start;
+
+			long binarySingleNanos = timeBinary(binaryClient, requests, 1);
+			long binaryBatchNanos = timeBinary(binaryClient, requests, BATCH_SIZE);
+
+			// Round 0 warms up the JIT and connection pools
+			if (round > 0) {
+				System.out.println("round=" + round + ", queries=" + QUERIES + ", json_ms="
+						+ TimeUnit.NANOSECONDS.toMillis(jsonNanos) + ", binary_batch_1_ms="
+						+ TimeUnit.NANOSECONDS.toMillis(binarySingleNanos) + ", binary_batch_" + BATCH_SIZE + "_ms="
+						+ TimeUnit.NANOSECONDS.toMillis(binaryBatchNanos));
+			}
+		}
+	}
+
+	private static long timeBinary(AthenaQueryBinaryClient binaryClient, List<MultiRangeQueryRequest> requests,
+			int batchSize) throws IOException {
+		long start = System.nanoTime();
+		for (int from = 0; from < QUERIES; from += batchSize) {
+			List<BinaryQueryResult> results = binaryClient.generate(requests.subList(from, from + batchSize));
+			assertThat(results).hasSize(batchSize).allMatch(BinaryQueryResult::isSuccess);
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,137 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BinaryQueryCodecTest {
+
+	private static final int MAX_QUERIES = 10;
+	private static final int MAX_BRANDS = 10;
+
+	private static MultiRangeQueryRequest request(List<String> brands, DateRange... ranges) {
+		MultiRangeQueryRequest request = new MultiRangeQueryRequest();
+		request.setDateRanges(Arrays.asList(ranges));
+		request.setBrands(brands);
+		return request;
+	}
+
+	private static List<MultiRangeQueryRequest> requests() {
+		return Arrays.asList(
+				request(Arrays.asList("Nokia", "Tesla", "Zoë's", ""),
+						new DateRange(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 31)),
+						new DateRange(LocalDate.of(2021, 2, 28), LocalDate.of(2021, 3, 1))),
+				request(Collections.<String>emptyList()));
+	}
+
+	@Test
+	public void requestsRoundTrip() {
+		assertThat(BinaryQueryCodec.decodeRequests(BinaryQueryCodec.encodeRequests(requests()), MAX_QUERIES, MAX_BRANDS))
+				.isEqualTo(requests());
+	}
+
+	@Test
+	public void responsesRoundTrip() {
+		List<BinaryQueryResult> results = Arrays.asList(BinaryQueryResult.success("select 'é'"),
+				BinaryQueryResult.error("Invalid date range"), BinaryQueryResult.success(""));
+
+		assertThat(BinaryQueryCodec.decodeResponses(BinaryQueryCodec.encodeResponses(results))).isEqualTo(results);
+	}
+
+	@Test
+	public void everyTruncationIsRejected() {
+		byte[] encoded = BinaryQueryCodec.encodeRequests(requests());
+		for (int length = 0; length < encoded.length; length++) {
+			byte[] truncated = Arrays.copyOf(encoded, length);
+			assertThatThrownBy(() -> BinaryQueryCodec.decodeRequests(truncated, MAX_QUERIES, MAX_BRANDS))
+					.as("truncated to %d bytes", length).isInstanceOf(InvalidBinaryQueryException.class);
+		}
+	}
+
+	@Test
+	public void corruptCountsAreRejectedBeforeAllocating() {
+		byte[] queryCount = ByteBuffer.allocate(5).put(BinaryQueryCodec.VERSION).putInt(Integer.MAX_VALUE).array();
+		assertThatThrownBy(() -> BinaryQueryCodec.decodeRequests(queryCount, Integer.MAX_VALUE, MAX_BRANDS))
+				.isInstanceOf(InvalidBinaryQueryException.class).hasMessageContaining("count");
+
+		byte[] encoded = BinaryQueryCodec.encodeRequests(requests());
+		// Date range count of the first query
+		ByteBuffer.wrap(encoded).putInt(5, -1);
+		assertThatThrownBy(() -> BinaryQueryCodec.decodeRequests(encoded, MAX_QUERIES, MAX_BRANDS))
+				.isInstanceOf(InvalidBinaryQueryException.class).hasMessageContaining("count");
+	}
+
+	@Test
+	public void unsupportedVersionIsRejected() {
+		byte[] encoded = BinaryQueryCodec.encodeRequests(requests());
+		encoded[0] = BinaryQueryCodec.VERSION + 1;
+
+		assertThatThrownBy(() -> BinaryQueryCodec.decodeRequests(encoded, MAX_QUERIES, MAX_BRANDS))
+				.isInstanceOf(InvalidBinaryQueryException.class).hasMessageContaining("version");
+	}
+
+	@Test
+	public void trailingBytesAreRejected() {
+		byte[] encoded = BinaryQueryCodec.encodeRequests(requests());
+
+		assertThatThrownBy(() -> BinaryQueryCodec.decodeRequests(Arrays.copyOf(encoded, encoded.length + 1), MAX_QUERIES, MAX_BRANDS))
+				.isInstanceOf(InvalidBinaryQueryException.class).hasMessageContaining("trailing");
+	}
+
+	@Test
+	public void batchesAboveTheLimitAreRejected() {
+		byte[] encoded = BinaryQueryCodec.encodeRequests(requests());
+
+		assertThat(BinaryQueryCodec.decodeRequests(encoded, 2, MAX_BRANDS)).hasSize(2);
+		assertThatThrownBy(() -> BinaryQueryCodec.decodeRequests(encoded, 1, MAX_BRANDS))
+				.isInstanceOf(InvalidBinaryQueryException.class).hasMessageContaining("at most 1");
+	}
+
+	@Test
+	public void queriesWithTooManyBrandsAreRejected() {
+		byte[] encoded = BinaryQueryCodec.encodeRequests(requests());
+
+		assertThat(BinaryQueryCodec.decodeRequests(encoded, MAX_QUERIES, 4)).hasSize(2);
+		assertThatThrownBy(() -> BinaryQueryCodec.decodeRequests(encoded, MAX_QUERIES, 3))
+				.isInstanceOf(InvalidBinaryQueryException.class).hasMessageContaining("4 brands, at most 3");
+	}
+
+	@Test
+	public void requestBodiesAreReadUpToTheLimit() throws IOException {
+		byte[] body = new byte[20000];
+
+		assertThat(BinaryQueryCodec.readRequest(new ByteArrayInputStream(body), body.length, body.length)).isEqualTo(body);
+		assertThat(BinaryQueryCodec.readRequest(new ByteArrayInputStream(body), -1, body.length)).isEqualTo(body);
+		// Declared length over the limit is rejected before reading
+		assertThatThrownBy(() -> BinaryQueryCodec.readRequest(new ByteArrayInputStream(body), body.length, body.length - 1))
+				.isInstanceOf(BinaryRequestTooLargeException.class);
+		// Undeclared length is rejected once the limit is passed
+		assertThatThrownBy(() -> BinaryQueryCodec.readRequest(new ByteArrayInputStream(body), -1, body.length - 1))
+				.isInstanceOf(BinaryRequestTooLargeException.class);
+	}
+}
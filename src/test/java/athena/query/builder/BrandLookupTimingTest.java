@@ -0,0 +1,92 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+/**
+ * Timing harness comparing the time to render a literal query with an
+ * IN-list against an inline VALUES relation as the brand list grows. Only the
+ * rendering in this service is measured, not Athena's planning of either
+ * form. Only runs with -Dathena.timing=true.
+ */
+public class BrandLookupTimingTest {
+
+	private static final int[] BRAND_COUNTS = { 10, 100, 1000, 5000, 20000 };
+	private static final int ITERATIONS = 20;
+
+	@BeforeClass
+	public static void enabled() {
+		Assume.assumeTrue(Boolean.getBoolean("athena.timing"));
+	}
+
+	private static StockQueryBuilder newStockQueryBuilder(int brandLookupThreshold) {
+		AthenaProperties athenaProperties = new AthenaProperties();
+		athenaProperties.setTable("STOCK-DATA-STORE");
+		athenaProperties.setQueryCacheLocalBytes(0);
+		athenaProperties.setBrandLookupThreshold(brandLookupThreshold);
+		return new StockQueryBuilder(new AthenaQueryBuilder(new PartitionManifest(athenaProperties)), athenaProperties,
+				new PreparedStatementCache(athenaProperties),
+				new ScanCostEstimator(new PartitionStatistics(athenaProperties), athenaProperties),
+				new GeneratedQueryCache(athenaProperties,
+						new DefaultListableBeanFactory().getBeanProvider(SharedQueryStore.class)));
+	}
+
+	private static long medianNanos(StockQueryBuilder stockQueryBuilder, List<String> brands) {
+		long[] nanos = new long[ITERATIONS];
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			assertThat(stockQueryBuilder.getQueryString(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 4, 14), brands))
+					.isNotEmpty();
+			nanos[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(nanos);
+		return nanos[ITERATIONS / 2];
+	}
+
+	@Test
+	public void inListAgainstValuesRelation() {
+		// Threshold 0 always renders an IN-list, threshold 1 always a VALUES relation
+		StockQueryBuilder inList = newStockQueryBuilder(0);
+		StockQueryBuilder valuesRelation = newStockQueryBuilder(1);
+		for (int round = 0; round < 2; round++) {
+			for (int brandCount : BRAND_COUNTS) {
+				List<String> brands = new ArrayList<String>(brandCount);
+				for (int i = 0; i < brandCount; i++) {
+					brands.add("Brand" + i);
+				}
+				long inListNanos = medianNanos(inList, brands);
+				long valuesNanos = medianNanos(valuesRelation, brands);
+				// Round 0 warms up the JIT
+				if (round > 0) {
+					System.out.println("brands=" + brandCount + ", in_list_us=" + inListNanos / 1000 + ", values_us="
+							+ valuesNanos / 1000);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+public class GeneratedQueryCacheTest {
+
+	private static final String VERSION = "v1";
+
+	private final AtomicInteger generated = new AtomicInteger();
+
+	private final Map<String, String> sharedQueries = new HashMap<String, String>();
+
+	private static GeneratedQueryCache newCache(long localBytes, long maxEntryBytes, SharedQueryStore sharedQueryStore) {
+		AthenaProperties athenaProperties = new AthenaProperties();
+		athenaProperties.setQueryCacheLocalBytes(localBytes);
+		athenaProperties.setQueryCacheMaxEntryBytes(maxEntryBytes);
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		if (sharedQueryStore != null) {
+			beanFactory.registerSingleton("sharedQueryStore", sharedQueryStore);
+		}
+		return new GeneratedQueryCache(athenaProperties, beanFactory.getBeanProvider(SharedQueryStore.class));
+	}
+
+	private String get(GeneratedQueryCache cache, String request, int queryLength) {
+		return cache.get(VERSION, request, () -> {
+			generated.incrementAndGet();
+			return String.join("", Collections.nCopies(queryLength, "q"));
+		});
+	}
+
+	private SharedQueryStore mapStore() {
+		return new SharedQueryStore() {
+			@Override
+			public String get(String key) {
+				return sharedQueries.get(key);
+			}
+
+			@Override
+			public void put(String key, String query) {
+				sharedQueries.put(key, query);
+			}
+		};
+	}
+
+	@Test
+	public void keysAreFixedSizeDigests() {
+		String brands = String.join("|", Collections.nCopies(10000, "Nokia"));
+
+		assertThat(GeneratedQueryCache.getKey(VERSION, brands)).hasSize(64).matches("[0-9a-f]+");
+		assertThat(GeneratedQueryCache.getKey(VERSION, "a")).isNotEqualTo(GeneratedQueryCache.getKey("v2", "a"));
+
+		GeneratedQueryCache cache = newCache(1024 * 1024, 1024 * 1024, mapStore());
+		get(cache, brands, 10);
+		assertThat(sharedQueries).containsOnlyKeys(GeneratedQueryCache.getKey(VERSION, brands));
+	}
+
+	@Test
+	public void localTierIsBoundedByBytes() {
+		// Each entry costs 160 + 2 * (64 + 100) = 488 bytes, so three fit
+		GeneratedQueryCache cache = newCache(1500, 1024, null);
+		get(cache, "a", 100);
+		get(cache, "b", 100);
+		get(cache, "c", 100);
+		get(cache, "a", 100);
+		assertThat(generated.get()).isEqualTo(3);
+
+		// Evicts b, the least recently used
+		get(cache, "d", 100);
+		assertThat(cache.getLocalBytes()).isEqualTo(3 * 488);
+		get(cache, "a", 100);
+		get(cache, "c", 100);
+		assertThat(generated.get()).isEqualTo(4);
+		get(cache, "b", 100);
+		assertThat(generated.get()).isEqualTo(5);
+		assertThat(cache.getLocalBytes()).isLessThanOrEqualTo(1500);
+	}
+
+	@Test
+	public void oversizedQueriesAreNotKeptLocally() {
+		GeneratedQueryCache cache = newCache(1024 * 1024, 500, null);
+		get(cache, "large", 200);
+		get(cache, "large", 200);
+		get(cache, "small", 10);
+		get(cache, "small", 10);
+
+		assertThat(generated.get()).isEqualTo(3);
+		assertThat(cache.getLocalBytes()).isEqualTo(160 + 2 * (64 + 10));
+	}
+
+	@Test
+	public void sharedTierIsReadOnLocalMiss() {
+		sharedQueries.put(GeneratedQueryCache.getKey(VERSION, "a"), "shared query");
+		GeneratedQueryCache cache = newCache(0, 1024, mapStore());
+
+		assertThat(get(cache, "a", 10)).isEqualTo("shared query");
+		assertThat(generated.get()).isZero();
+	}
+}
@@ -0,0 +1,107 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileQueryStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void storedQueriesSurviveReopening() throws IOException {
+		File file = folder.newFile("queries");
+		try (MappedFileQueryStore store = new MappedFileQueryStore(file.toPath(), 16, 256)) {
+			store.put("a", "select 'é'");
+			assertThat(store.get("a")).isEqualTo("select 'é'");
+			assertThat(store.get("b")).isNull();
+		}
+		try (MappedFileQueryStore store = new MappedFileQueryStore(file.toPath(), 16, 256)) {
+			assertThat(store.get("a")).isEqualTo("select 'é'");
+		}
+	}
+
+	@Test
+	public void collidingKeysOverwriteEachOtherAndMiss() throws IOException {
+		try (MappedFileQueryStore store = new MappedFileQueryStore(folder.newFile("queries").toPath(), 1, 256)) {
+			store.put("a", "query a");
+			store.put("b", "query b");
+
+			assertThat(store.get("a")).isNull();
+			assertThat(store.get("b")).isEqualTo("query b");
+		}
+	}
+
+	@Test
+	public void oversizedEntriesAreIgnored() throws IOException {
+		try (MappedFileQueryStore store = new MappedFileQueryStore(folder.newFile("queries").toPath(), 4, 64)) {
+			store.put("a", "small");
+			// Slot header 16 + key 1 + query 48 exceeds 64 bytes
+			store.put("a", String.join("", Collections.nCopies(48, "q")));
+
+			assertThat(store.get("a")).isEqualTo("small");
+		}
+	}
+
+	@Test
+	public void storeIsReformattedWhenLayoutChanges() throws IOException {
+		File file = folder.newFile("queries");
+		try (MappedFileQueryStore store = new MappedFileQueryStore(file.toPath(), 4, 128)) {
+			store.put("a", "query a");
+		}
+		try (MappedFileQueryStore store = new MappedFileQueryStore(file.toPath(), 4, 256)) {
+			assertThat(store.get("a")).isNull();
+			store.put("a", "query a");
+			assertThat(store.get("a")).isEqualTo("query a");
+		}
+	}
+
+	@Test
+	public void corruptEntriesAreMisses() throws IOException {
+		File file = folder.newFile("queries");
+		try (MappedFileQueryStore store = new MappedFileQueryStore(file.toPath(), 1, 128)) {
+			store.put("a", "query a");
+		}
+		try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+			// First query byte: file header 12 + slot header 16 + key 1
+			raw.seek(29);
+			raw.write('Q');
+		}
+		try (MappedFileQueryStore store = new MappedFileQueryStore(file.toPath(), 1, 128)) {
+			assertThat(store.get("a")).isNull();
+		}
+	}
+
+	@Test
+	public void invalidSizesAreRejected() {
+		assertThatThrownBy(() -> new MappedFileQueryStore(folder.newFile("queries").toPath(), 0, 128))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new MappedFileQueryStore(folder.newFile("other").toPath(), 4, 16))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
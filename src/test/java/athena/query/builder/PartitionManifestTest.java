@@ -0,0 +1,164 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PartitionManifestTest {
+
+	// Partitions on or after 2021-06-15 are treated as existing
+	static final Instant MANIFEST_MODIFIED = Instant.parse("2021-06-15T12:00:00Z");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AthenaProperties athenaProperties;
+
+	private PartitionManifest partitionManifest;
+
+	@Before
+	public void setUp() {
+		athenaProperties = new AthenaProperties();
+		partitionManifest = new PartitionManifest(athenaProperties);
+	}
+
+	static void writeManifest(File file, Instant modified, String... partitions) throws IOException {
+		Files.write(file.toPath(), Arrays.asList(partitions), StandardCharsets.UTF_8);
+		Files.setLastModifiedTime(file.toPath(), FileTime.from(modified));
+	}
+
+	private void loadManifest(String... partitions) throws IOException {
+		File file = folder.newFile();
+		writeManifest(file, MANIFEST_MODIFIED, partitions);
+		athenaProperties.setPartitionManifestPath(file.getAbsolutePath());
+		partitionManifest.refresh();
+	}
+
+	@Test
+	public void notLoadedWithoutPath() {
+		partitionManifest.refresh();
+		assertThat(partitionManifest.isLoaded()).isFalse();
+		assertThat(partitionManifest.getPartitions(2020).isEmpty()).isTrue();
+		assertThat(partitionManifest.getVersion()).isEqualTo("none");
+	}
+
+	@Test
+	public void parsesBothFormatsAndSkipsInvalidLines() throws IOException {
+		loadManifest("# comment", "", "2019-03-05", "year=2019/month=12/day=31", "2019-02-30", "garbage");
+
+		BitSet partitions = partitionManifest.getPartitions(2019);
+		assertThat(partitions.cardinality()).isEqualTo(2);
+		assertThat(partitions.get(LocalDate.of(2019, 3, 5).getDayOfYear())).isTrue();
+		assertThat(partitions.get(365)).isTrue();
+	}
+
+	@Test
+	public void leapYearDayIsIndexedByDayOfYear() throws IOException {
+		loadManifest("2020-02-29", "2020-12-31");
+
+		BitSet partitions = partitionManifest.getPartitions(2020);
+		assertThat(partitions.get(60)).isTrue();
+		assertThat(partitions.get(366)).isTrue();
+		assertThat(partitions.cardinality()).isEqualTo(2);
+	}
+
+	@Test
+	public void daysFromModificationDateAreReportedAsExisting() throws IOException {
+		loadManifest("2021-01-04");
+
+		BitSet partitions2021 = partitionManifest.getPartitions(2021);
+		int openFrom = LocalDate.of(2021, 6, 15).getDayOfYear();
+		assertThat(partitions2021.get(openFrom - 1)).isFalse();
+		assertThat(partitions2021.nextSetBit(openFrom)).isEqualTo(openFrom);
+		assertThat(partitions2021.cardinality()).isEqualTo(1 + 365 - openFrom + 1);
+		// Later years are entirely open, including leap days
+		assertThat(partitionManifest.getPartitions(2024).cardinality()).isEqualTo(366);
+		assertThat(partitionManifest.getPartitions(2020).isEmpty()).isTrue();
+	}
+
+	@Test
+	public void returnedPartitionsAreCopies() throws IOException {
+		loadManifest("2019-03-05");
+
+		partitionManifest.getPartitions(2019).clear();
+		assertThat(partitionManifest.getPartitions(2019).cardinality()).isEqualTo(1);
+	}
+
+	@Test
+	public void versionFollowsContent() throws IOException {
+		loadManifest("2019-03-05");
+		String version = partitionManifest.getVersion();
+
+		File file = folder.newFile();
+		writeManifest(file, MANIFEST_MODIFIED.plusSeconds(1), "2019-03-05", "2019-03-06");
+		athenaProperties.setPartitionManifestPath(file.getAbsolutePath());
+		partitionManifest.refresh();
+
+		assertThat(partitionManifest.getVersion()).isNotEqualTo(version);
+	}
+
+	@Test
+	public void declaredOpenFromOverridesModificationTime() throws IOException {
+		loadManifest("2021-01-04", "open-from=2021-03-01");
+
+		BitSet partitions2021 = partitionManifest.getPartitions(2021);
+		int openFrom = LocalDate.of(2021, 3, 1).getDayOfYear();
+		assertThat(partitions2021.get(openFrom - 1)).isFalse();
+		assertThat(partitions2021.nextSetBit(openFrom)).isEqualTo(openFrom);
+	}
+
+	@Test
+	public void versionWithDeclaredOpenFromIgnoresModificationTime() throws IOException {
+		loadManifest("2019-03-05", "open-from=2021-03-01");
+		String version = partitionManifest.getVersion();
+
+		File file = folder.newFile();
+		writeManifest(file, MANIFEST_MODIFIED.plusSeconds(30L * 24 * 3600), "2019-03-05", "open-from=2021-03-01");
+		athenaProperties.setPartitionManifestPath(file.getAbsolutePath());
+		partitionManifest.refresh();
+
+		assertThat(partitionManifest.getVersion()).isEqualTo(version);
+	}
+
+	@Test
+	public void versionWithoutOpenFromFollowsModificationDay() throws IOException {
+		loadManifest("2019-03-05");
+		String version = partitionManifest.getVersion();
+
+		File file = folder.newFile();
+		writeManifest(file, MANIFEST_MODIFIED.plusSeconds(24 * 3600), "2019-03-05");
+		athenaProperties.setPartitionManifestPath(file.getAbsolutePath());
+		partitionManifest.refresh();
+
+		assertThat(partitionManifest.getVersion()).isNotEqualTo(version);
+	}
+}
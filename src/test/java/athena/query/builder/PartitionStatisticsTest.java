@@ -0,0 +1,83 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PartitionStatisticsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AthenaProperties athenaProperties;
+
+	private PartitionStatistics partitionStatistics;
+
+	@Before
+	public void setUp() throws IOException {
+		athenaProperties = new AthenaProperties();
+		partitionStatistics = new PartitionStatistics(athenaProperties);
+		loadStatistics(partitionStatistics, athenaProperties, folder.newFile());
+	}
+
+	static void loadStatistics(PartitionStatistics partitionStatistics, AthenaProperties athenaProperties, File file)
+			throws IOException {
+		Files.write(file.toPath(), Arrays.asList("# partition,bytes", "2019-12-31,100", "2020-01-01,10", "2020-01-02 20",
+				"2020-02-29,40", "year=2020/month=03/day=01,80", "2020-03-02", "2020-03-03,abc", "2020-12-31,5"),
+				StandardCharsets.UTF_8);
+		athenaProperties.setPartitionStatsPath(file.getAbsolutePath());
+		partitionStatistics.refresh();
+	}
+
+	@Test
+	public void sumsBytesAndPartitionsOfDayRanges() {
+		assertThat(partitionStatistics.isLoaded()).isTrue();
+		assertThat(partitionStatistics.getBytes(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 2))).isEqualTo(30);
+		assertThat(partitionStatistics.getBytes(LocalDate.of(2020, 1, 2), LocalDate.of(2020, 1, 2))).isEqualTo(20);
+		assertThat(partitionStatistics.getBytes(LocalDate.of(2020, 1, 3), LocalDate.of(2020, 2, 28))).isEqualTo(0);
+		assertThat(partitionStatistics.getBytes(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31))).isEqualTo(155);
+		assertThat(partitionStatistics.getPartitionCount(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31))).isEqualTo(5);
+	}
+
+	@Test
+	public void yearsAreIndexedSeparately() {
+		assertThat(partitionStatistics.getBytes(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31))).isEqualTo(100);
+		assertThat(partitionStatistics.getBytes(LocalDate.of(2020, 2, 29), LocalDate.of(2020, 2, 29))).isEqualTo(40);
+		assertThat(partitionStatistics.getBytes(LocalDate.of(2018, 1, 1), LocalDate.of(2018, 12, 31))).isEqualTo(0);
+		assertThat(partitionStatistics.getPartitionCount(LocalDate.of(2018, 1, 1), LocalDate.of(2018, 12, 31))).isEqualTo(0);
+	}
+
+	@Test
+	public void notLoadedWithoutPath() {
+		PartitionStatistics statistics = new PartitionStatistics(new AthenaProperties());
+		statistics.refresh();
+		assertThat(statistics.isLoaded()).isFalse();
+		assertThat(statistics.getBytes(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31))).isEqualTo(0);
+	}
+}
@@ -0,0 +1,91 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.support.SpringFactoriesLoader;
+
+public class QueryCacheAutoConfigurationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(QueryCacheAutoConfiguration.class))
+			.withUserConfiguration(PropertiesConfig.class);
+
+	@Configuration
+	@EnableConfigurationProperties(AthenaProperties.class)
+	static class PropertiesConfig {
+	}
+
+	@Configuration
+	static class CustomStoreConfig {
+		@Bean
+		public SharedQueryStore customQueryStore() {
+			return new SharedQueryStore() {
+				@Override
+				public String get(String key) {
+					return null;
+				}
+
+				@Override
+				public void put(String key, String query) {
+				}
+			};
+		}
+	}
+
+	@Test
+	public void isRegisteredAsAutoConfiguration() {
+		assertThat(SpringFactoriesLoader.loadFactoryNames(EnableAutoConfiguration.class, getClass().getClassLoader()))
+				.contains(QueryCacheAutoConfiguration.class.getName());
+	}
+
+	@Test
+	public void noSharedStoreWithoutPath() {
+		contextRunner.run(context -> assertThat(context).doesNotHaveBean(SharedQueryStore.class));
+	}
+
+	@Test
+	public void mappedFileStoreWhenPathIsSet() throws Exception {
+		String path = folder.newFile("queries").getAbsolutePath();
+		contextRunner.withPropertyValues("aws.athena.query-cache-shared-path=" + path, "aws.athena.query-cache-shared-slots=4",
+				"aws.athena.query-cache-shared-slot-bytes=128")
+				.run(context -> assertThat(context).getBean(SharedQueryStore.class).isInstanceOf(MappedFileQueryStore.class));
+	}
+
+	@Test
+	public void applicationStoreWinsOverMappedFileStore() throws Exception {
+		String path = folder.newFile("queries").getAbsolutePath();
+		contextRunner.withUserConfiguration(CustomStoreConfig.class)
+				.withPropertyValues("aws.athena.query-cache-shared-path=" + path).run(context -> {
+					assertThat(context).hasSingleBean(SharedQueryStore.class);
+					assertThat(context).doesNotHaveBean(MappedFileQueryStore.class);
+				});
+	}
+}
@@ -0,0 +1,117 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class QueryGenerationExecutorTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private QueryGenerationExecutor executor;
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	private static AthenaProperties properties(int threads, int queueCapacity, long deadlineMs) {
+		AthenaProperties athenaProperties = new AthenaProperties();
+		athenaProperties.setQueryExecutorThreads(threads);
+		athenaProperties.setQueryExecutorQueueCapacity(queueCapacity);
+		athenaProperties.setQueryDeadlineMs(deadlineMs);
+		return athenaProperties;
+	}
+
+	private CompletableFuture<String> submitBlocking(CountDownLatch started) {
+		return executor.submit(() -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "done";
+		});
+	}
+
+	@Test
+	public void zeroQueueCapacityRejectsWhileWorkersAreBusy() throws Exception {
+		executor = new QueryGenerationExecutor(properties(1, 0, 2000));
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture<String> running = submitBlocking(started);
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThatThrownBy(() -> executor.submit(() -> "rejected")).isInstanceOf(RejectedExecutionException.class);
+
+		release.countDown();
+		assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+	}
+
+	@Test
+	public void negativeSettingsFailFast() {
+		assertThatThrownBy(() -> new QueryGenerationExecutor(properties(1, -1, 2000)))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("query-executor-queue-capacity");
+		assertThatThrownBy(() -> new QueryGenerationExecutor(properties(-1, 1, 2000)))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("query-executor-threads");
+	}
+
+	@Test
+	public void queuedWorkPastDeadlineIsDropped() throws Exception {
+		executor = new QueryGenerationExecutor(properties(1, 1, 50));
+		CountDownLatch started = new CountDownLatch(1);
+		submitBlocking(started);
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		CompletableFuture<String> queued = executor.submit(() -> "late");
+
+		Thread.sleep(100);
+		release.countDown();
+
+		assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(QueryDeadlineExceededException.class);
+	}
+
+	@Test
+	public void deadlineIsHandedToRunningWork() throws Exception {
+		executor = new QueryGenerationExecutor(properties(1, 1, 200));
+
+		CompletableFuture<Boolean> exceeded = executor.submitWithDeadline(deadline -> {
+			boolean exceededAtStart = deadline.isExceeded();
+			try {
+				Thread.sleep(400);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return !exceededAtStart && deadline.isExceeded();
+		});
+
+		assertThat(exceeded.get(5, TimeUnit.SECONDS)).isTrue();
+	}
+}
@@ -0,0 +1,88 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScanCostEstimatorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AthenaProperties athenaProperties;
+
+	private ScanCostEstimator scanCostEstimator;
+
+	@Before
+	public void setUp() throws IOException {
+		athenaProperties = new AthenaProperties();
+		PartitionStatistics partitionStatistics = new PartitionStatistics(athenaProperties);
+		PartitionStatisticsTest.loadStatistics(partitionStatistics, athenaProperties, folder.newFile());
+		scanCostEstimator = new ScanCostEstimator(partitionStatistics, athenaProperties);
+	}
+
+	@Test
+	public void estimatesYearMonthAndDayFilters() {
+		assertThat(scanCostEstimator.estimate(Collections.singletonList(new DateFilter(2020, null, null))))
+				.isEqualTo(new ScanEstimate(155, 5));
+		assertThat(scanCostEstimator.estimate(Collections.singletonList(new DateFilter(2020, Arrays.asList("01", "02"), null))))
+				.isEqualTo(new ScanEstimate(70, 3));
+		// Days that do not exist in the month are ignored
+		assertThat(scanCostEstimator.estimate(Collections.singletonList(
+				new DateFilter(2020, Arrays.asList("02"), Arrays.asList("28", "29", "30", "31")))))
+				.isEqualTo(new ScanEstimate(40, 1));
+	}
+
+	@Test
+	public void estimateIsUnknownWithoutStatistics() {
+		ScanCostEstimator estimator = new ScanCostEstimator(new PartitionStatistics(new AthenaProperties()), new AthenaProperties());
+		ScanEstimate estimate = estimator.estimate(Collections.singletonList(new DateFilter(2020, null, null)));
+		assertThat(estimate.isKnown()).isFalse();
+	}
+
+	@Test
+	public void narrowedFromDateIsLatestStartWithinBudget() {
+		LocalDate fromDate = LocalDate.of(2020, 1, 1);
+		LocalDate toDate = LocalDate.of(2020, 3, 1);
+		assertThat(scanCostEstimator.getNarrowedFromDate(fromDate, toDate, 140)).isEqualTo(LocalDate.of(2020, 1, 2));
+		assertThat(scanCostEstimator.getNarrowedFromDate(fromDate, toDate, 139)).isEqualTo(LocalDate.of(2020, 1, 3));
+		assertThat(scanCostEstimator.getNarrowedFromDate(fromDate, toDate, 1000)).isEqualTo(fromDate);
+		// toDate alone exceeds the budget
+		assertThat(scanCostEstimator.getNarrowedFromDate(fromDate, toDate, 50)).isNull();
+	}
+
+	@Test
+	public void budgetIsSmallestOfConfiguredAndRequested() {
+		assertThat(scanCostEstimator.getBudget(null)).isEqualTo(0);
+		assertThat(scanCostEstimator.getBudget(70L)).isEqualTo(70);
+		athenaProperties.setScanBudgetBytes(100);
+		assertThat(scanCostEstimator.getBudget(null)).isEqualTo(100);
+		assertThat(scanCostEstimator.getBudget(0L)).isEqualTo(100);
+		assertThat(scanCostEstimator.getBudget(50L)).isEqualTo(50);
+		assertThat(scanCostEstimator.getBudget(500L)).isEqualTo(100);
+	}
+}
@@ -0,0 +1,159 @@
+package athena.query.builder;
+/*
+ * Copyright (C) 2020 ATHENA Query DSL AUTHOR; Fraser Sequeira
+ * All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * */
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+public class StockQueryBuilderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AthenaProperties athenaProperties;
+
+	private PartitionManifest partitionManifest;
+
+	private AthenaQueryBuilder queryBuilder;
+
+	private PreparedStatementCache statementCache;
+
+	private StockQueryBuilder stockQueryBuilder;
+
+	@Before
+	public void setUp() {
+		athenaProperties = new AthenaProperties();
+		athenaProperties.setTable("STOCK-DATA-STORE");
+		athenaProperties.setInListBucketSize(4);
+		partitionManifest = new PartitionManifest(athenaProperties);
+		queryBuilder = new AthenaQueryBuilder(partitionManifest);
+		statementCache = new PreparedStatementCache(athenaProperties);
+		stockQueryBuilder = newStockQueryBuilder(statementCache);
+	}
+
+	private void loadManifest(String... partitions) throws IOException {
+		File file = folder.newFile();
+		PartitionManifestTest.writeManifest(file, PartitionManifestTest.MANIFEST_MODIFIED, partitions);
+		athenaProperties.setPartitionManifestPath(file.getAbsolutePath());
+		partitionManifest.refresh();
+	}
+
+	private StockQueryBuilder newStockQueryBuilder(PreparedStatementCache statementCache) {
+		PartitionStatistics partitionStatistics = new PartitionStatistics(athenaProperties);
+		return new StockQueryBuilder(queryBuilder, athenaProperties, statementCache,
+				new ScanCostEstimator(partitionStatistics, athenaProperties), new GeneratedQueryCache(athenaProperties,
+						new DefaultListableBeanFactory().getBeanProvider(SharedQueryStore.class)));
+	}
+
+	@Test
+	public void preparedQueryBindsOneLiteralPerPlaceholder() {
+		AthenaPreparedQuery prepared = stockQueryBuilder.getPreparedQuery(LocalDate.of(2020, 4, 9),
+				LocalDate.of(2020, 4, 19), Arrays.asList("Nokia", "Tesla's"));
+
+		assertThat(prepared.getStatement()).doesNotContain("Nokia");
+		assertThat(prepared.getParameters()).hasSize(countPlaceholders(prepared.getStatement()));
+		assertThat(prepared.getParameters()).startsWith("'2020'", "'04'", "'04'", "'04'", "'04'", "'09'");
+		assertThat(prepared.getParameters()).contains("'Nokia'", "'Tesla''s'", "'sofa'");
+		assertThat(prepared.getExecuteStatement()).isEqualTo(
+				"EXECUTE " + prepared.getStatementName() + " USING " + String.join(", ", prepared.getParameters()));
+	}
+
+	@Test
+	public void cachedShapeCollectsSameParametersAsRendering() {
+		// Warm the shape cache with different values of the same shape
+		stockQueryBuilder.getPreparedQuery(LocalDate.of(2019, 2, 10), LocalDate.of(2019, 2, 20), Arrays.asList("A", "B", "C"));
+		AthenaPreparedQuery cached = stockQueryBuilder.getPreparedQuery(LocalDate.of(2020, 4, 9),
+				LocalDate.of(2020, 4, 19), Arrays.asList("Nokia", "Tesla"));
+		// A fresh builder renders the statement and takes the QueryDSL bindings
+		AthenaPreparedQuery rendered = newStockQueryBuilder(new PreparedStatementCache(athenaProperties)).getPreparedQuery(LocalDate.of(2020, 4, 9),
+				LocalDate.of(2020, 4, 19), Arrays.asList("Nokia", "Tesla"));
+
+		// Statements are only cached when their bindings match the collected parameters
+		assertThat(statementCache.size()).isEqualTo(1);
+		assertThat(cached.getStatement()).isEqualTo(rendered.getStatement());
+		assertThat(cached.getStatementName()).isEqualTo(rendered.getStatementName());
+		assertThat(cached.getParameters()).isEqualTo(rendered.getParameters());
+	}
+
+	@Test
+	public void requestsOfSameArityBucketShareStatement() {
+		AthenaPreparedQuery first = stockQueryBuilder.getPreparedQuery(LocalDate.of(2020, 4, 9),
+				LocalDate.of(2020, 4, 19), Arrays.asList("Nokia"));
+		AthenaPreparedQuery second = stockQueryBuilder.getPreparedQuery(LocalDate.of(2020, 4, 10),
+				LocalDate.of(2020, 4, 18), Arrays.asList("Nokia", "Tesla", "Apple"));
+
+		assertThat(second.getStatementName()).isEqualTo(first.getStatementName());
+		assertThat(second.getParameters()).isNotEqualTo(first.getParameters());
+	}
+
+	private int countPlaceholders(String statement) {
+		return statement.length() - statement.replace("?", "").length();
+	}
+
+	@Test
+	public void estimatedQueryUsesCanonicalBrands() {
+		AthenaQueryEstimate estimate = stockQueryBuilder.getEstimatedQuery(LocalDate.of(2020, 4, 9),
+				LocalDate.of(2020, 4, 19), Arrays.asList("Tesla", "Nokia", "Tesla"), null);
+
+		assertThat(estimate.getQuery()).isEqualTo(stockQueryBuilder.getQueryString(LocalDate.of(2020, 4, 9),
+				LocalDate.of(2020, 4, 19), Arrays.asList("Nokia", "Tesla")));
+	}
+
+	@Test
+	public void brandListsAboveThresholdUseValuesRelation() {
+		athenaProperties.setBrandLookupThreshold(2);
+		String inList = stockQueryBuilder.getQueryString(LocalDate.of(2020, 4, 9), LocalDate.of(2020, 4, 19),
+				Arrays.asList("Nokia", "Tesla"));
+		String lookup = stockQueryBuilder.getQueryString(LocalDate.of(2020, 4, 9), LocalDate.of(2020, 4, 19),
+				Arrays.asList("Nokia", "Tesla", "Zoë's"));
+
+		assertThat(inList).doesNotContain("brand_lookup").contains("in ('Nokia', 'Tesla')");
+		assertThat(lookup).startsWith("WITH brand_lookup (brand) AS (VALUES ('Nokia'), ('Tesla'), ('Zoë''s')) select")
+				.contains("in (select brand from brand_lookup)").doesNotContain("in ('Nokia'");
+	}
+
+	@Test
+	public void preparedQueryRejectsInvertedRange() throws IOException {
+		assertThatThrownBy(() -> stockQueryBuilder.getPreparedQuery(LocalDate.of(2020, 4, 19), LocalDate.of(2020, 4, 9),
+				Arrays.asList("Nokia"))).isInstanceOf(InvalidDateRangeException.class);
+
+		loadManifest("2020-04-10");
+		assertThatThrownBy(() -> stockQueryBuilder.getPreparedQuery(LocalDate.of(2020, 4, 19), LocalDate.of(2020, 4, 9),
+				Arrays.asList("Nokia"))).isInstanceOf(InvalidDateRangeException.class);
+	}
+
+	@Test
+	public void estimatedQueryRejectsInvertedRangeBeforeEstimating() throws IOException {
+		assertThatThrownBy(() -> stockQueryBuilder.getEstimatedQuery(LocalDate.of(2020, 4, 19), LocalDate.of(2020, 4, 9),
+				Arrays.asList("Nokia"), null)).isInstanceOf(InvalidDateRangeException.class);
+
+		loadManifest("2020-04-10");
+		assertThatThrownBy(() -> stockQueryBuilder.getEstimatedQuery(LocalDate.of(2020, 4, 19), LocalDate.of(2020, 4, 9),
+				Arrays.asList("Nokia"), null)).isInstanceOf(InvalidDateRangeException.class);
+	}
+}